@@ -0,0 +1,247 @@
+package com.isbx.androidtools.media;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A pool of reusable {@link Bitmap}s, which lets an {@link ImageResizer} decode and scale images
+ * into the memory of bitmaps it has already finished with, instead of allocating new ones and
+ * leaving the old ones to the garbage collector.
+ *
+ * <p>
+ * Pooled bitmaps are kept in buckets by size. Since Android 4.4, a request can be served by any
+ * bitmap that is at least as large, up to four times the requested size. On older versions, only
+ * bitmaps of exactly the requested dimensions can be reused, and decoding into a pooled bitmap
+ * requires a sample size of {@code 1}.
+ * </p>
+ *
+ * <p>
+ * The total size of the pooled bitmaps never exceeds {@link #getMaxSize()}, evicting the least
+ * recently pooled bitmaps first. To give the memory back when the system runs low, register the
+ * pool with {@link android.content.Context#registerComponentCallbacks(android.content.ComponentCallbacks)},
+ * or call {@link #trimToSize(long)} or {@link #clear()} directly. A pool can be shared by several
+ * ImageResizers.
+ * </p>
+ *
+ * @see ImageResizer#setBitmapPool(BitmapPool)
+ */
+public class BitmapPool implements ComponentCallbacks2 {
+
+    // don't hand out bitmaps much larger than requested, they are better kept for large requests
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    private final TreeMap<Integer, LinkedList<Bitmap>> buckets = new TreeMap<>();
+    private final LinkedList<Bitmap> bitmaps = new LinkedList<>();
+    private long maxSize;
+    private long size;
+
+    /**
+     * Creates a new BitmapPool.
+     *
+     * @param maxSize The maximum total size in bytes of the pooled bitmaps
+     */
+    public BitmapPool(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the maximum total size of the pooled bitmaps.
+     *
+     * @return The maximum size in bytes
+     *
+     * @see BitmapPool#setMaxSize(long)
+     */
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the maximum total size of the pooled bitmaps, evicting bitmaps if the pool is larger.
+     *
+     * @param maxSize The maximum size in bytes
+     *
+     * @see BitmapPool#getMaxSize()
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Returns the current total size of the pooled bitmaps.
+     *
+     * @return The size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns a mutable, transparent bitmap of exactly the given dimensions and config, reusing a
+     * pooled bitmap if possible.
+     *
+     * @param width The width of the bitmap
+     * @param height The height of the bitmap
+     * @param config The {@link Bitmap.Config} of the bitmap
+     * @return A pooled or newly created {@link Bitmap}
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(width, height, config, 1);
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, config);
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            bitmap.reconfigure(width, height, config);
+        }
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    /**
+     * Returns a pooled bitmap that an image can be decoded into with
+     * {@link android.graphics.BitmapFactory.Options#inBitmap}, or {@code null} if there is none.
+     *
+     * @param width The width of the decoded image
+     * @param height The height of the decoded image
+     * @param config The {@link Bitmap.Config} the image is decoded with
+     * @param sampleSize The sample size the image is decoded with
+     */
+    Bitmap getForDecode(int width, int height, Bitmap.Config config, int sampleSize) {
+        return take(width, height, config, sampleSize);
+    }
+
+    /**
+     * Adds a bitmap to the pool once it is no longer used. Bitmaps that can't be reused, because
+     * they are immutable or larger than the pool, are recycled instead.
+     *
+     * @param bitmap The {@link Bitmap} to pool, which must not be used by the caller afterwards
+     */
+    public void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+
+        int bytes = getAllocationSize(bitmap);
+        synchronized (this) {
+            if (bitmap.isMutable() && bitmap.getConfig() != null && bytes <= maxSize) {
+                LinkedList<Bitmap> bucket = buckets.get(bytes);
+                if (bucket == null) {
+                    bucket = new LinkedList<>();
+                    buckets.put(bytes, bucket);
+                }
+                bucket.add(bitmap);
+                bitmaps.add(bitmap);
+                size += bytes;
+                trimToSize(maxSize);
+                return;
+            }
+        }
+        bitmap.recycle();
+    }
+
+    /**
+     * Evicts the least recently pooled bitmaps until the total size of the pool is at most
+     * {@code size}.
+     *
+     * @param size The size in bytes to trim the pool to
+     */
+    public synchronized void trimToSize(long size) {
+        while (this.size > size && !bitmaps.isEmpty()) {
+            Bitmap bitmap = bitmaps.removeFirst();
+            int bytes = getAllocationSize(bitmap);
+            removeFromBucket(bytes, bitmap);
+            this.size -= bytes;
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Evicts all pooled bitmaps.
+     */
+    public void clear() {
+        trimToSize(0);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            clear();
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            trimToSize(getMaxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private synchronized Bitmap take(int width, int height, Bitmap.Config config, int sampleSize) {
+        int needed = width * height * getBytesPerPixel(config);
+
+        Bitmap bitmap = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            Map.Entry<Integer, LinkedList<Bitmap>> entry = buckets.ceilingEntry(needed);
+            if (entry != null && entry.getKey() <= (long) needed * MAX_SIZE_MULTIPLE) {
+                bitmap = entry.getValue().getFirst();
+            }
+        } else if (sampleSize == 1) {
+            // before KitKat, only bitmaps of exactly the same dimensions and config can be reused
+            LinkedList<Bitmap> bucket = buckets.get(needed);
+            if (bucket != null) {
+                for (Bitmap candidate : bucket) {
+                    if (candidate.getWidth() == width && candidate.getHeight() == height
+                        && candidate.getConfig() == config) {
+                        bitmap = candidate;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (bitmap != null) {
+            int bytes = getAllocationSize(bitmap);
+            removeFromBucket(bytes, bitmap);
+            bitmaps.remove(bitmap);
+            size -= bytes;
+        }
+        return bitmap;
+    }
+
+    private void removeFromBucket(int bytes, Bitmap bitmap) {
+        LinkedList<Bitmap> bucket = buckets.get(bytes);
+        if (bucket != null) {
+            bucket.remove(bitmap);
+            if (bucket.isEmpty()) {
+                buckets.remove(bytes);
+            }
+        }
+    }
+
+    private static int getAllocationSize(Bitmap bitmap) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+            ? bitmap.getAllocationByteCount() : bitmap.getByteCount();
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        return 4;
+    }
+}
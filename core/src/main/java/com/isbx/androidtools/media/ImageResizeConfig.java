@@ -1,5 +1,7 @@
 package com.isbx.androidtools.media;
 
+import android.graphics.Bitmap;
+
 /**
  * <p>
  * A configuration class for how an image should be resized by {@link ImageResizer}. The default
@@ -19,6 +21,7 @@ public class ImageResizeConfig {
     private static final int DEFAULT_LARGE_SIZE = 1024;
     private static final int DEFAULT_MEDIUM_SIZE = 512;
     private static final int DEFAULT_SMALL_SIZE = 256;
+    private static final int DEFAULT_QUALITY = 100;
 
     private final Dimension largeDimension = new Dimension(DEFAULT_LARGE_SIZE, DEFAULT_LARGE_SIZE);
     private final Dimension mediumDimension = new Dimension(DEFAULT_MEDIUM_SIZE, DEFAULT_MEDIUM_SIZE);
@@ -27,6 +30,14 @@ public class ImageResizeConfig {
     private boolean largeOutputEnabled = true;
     private boolean mediumOutputEnabled = true;
     private boolean smallOutputEnabled = true;
+    private boolean singleDecodeEnabled = true;
+
+    private Bitmap.CompressFormat largeOutputFormat;
+    private Bitmap.CompressFormat mediumOutputFormat;
+    private Bitmap.CompressFormat smallOutputFormat;
+    private int largeQuality = DEFAULT_QUALITY;
+    private int mediumQuality = DEFAULT_QUALITY;
+    private int smallQuality = DEFAULT_QUALITY;
 
     /**
      * Returns whether the large output size is requested by this configuration.
@@ -94,6 +105,33 @@ public class ImageResizeConfig {
         this.smallOutputEnabled = smallOutputEnabled;
     }
 
+    /**
+     * Returns whether {@link ImageResizer#resizeImage(android.net.Uri, ImageResizer.ImageResizeCallback)}
+     * decodes the source image only once for all output sizes.
+     *
+     * @return {@code true} if single decoding is enabled, {@code false} otherwise
+     *
+     * @see ImageResizeConfig#setSingleDecodeEnabled(boolean)
+     */
+    public boolean isSingleDecodeEnabled() {
+        return singleDecodeEnabled;
+    }
+
+    /**
+     * Specifies whether {@link ImageResizer#resizeImage(android.net.Uri, ImageResizer.ImageResizeCallback)}
+     * decodes the source image only once, at the resolution the largest output size needs, and
+     * scales each smaller output down from the previous one. Otherwise every output size is
+     * decoded from the source separately. The default is {@code true}.
+     *
+     * @param singleDecodeEnabled {@code true} if single decoding is enabled, {@code false}
+     *                            otherwise
+     *
+     * @see ImageResizeConfig#isSingleDecodeEnabled()
+     */
+    public void setSingleDecodeEnabled(boolean singleDecodeEnabled) {
+        this.singleDecodeEnabled = singleDecodeEnabled;
+    }
+
     /**
      * Returns the pixel dimensions specified for the large output size.
      *
@@ -241,6 +279,247 @@ public class ImageResizeConfig {
         return this;
     }
 
+    /**
+     * Returns the format the large output size is encoded in.
+     *
+     * @return The {@link Bitmap.CompressFormat} of the large output, or {@code null} if it
+     *         matches the source image
+     *
+     * @see ImageResizeConfig#setLargeOutputFormat(Bitmap.CompressFormat)
+     */
+    public Bitmap.CompressFormat getLargeOutputFormat() {
+        return largeOutputFormat;
+    }
+
+    /**
+     * Sets the format the large output size is encoded in. By default, JPEG images are encoded
+     * as JPEG and all other images as PNG, which keeps transparency. Images with transparency lose
+     * it when encoded as JPEG.
+     *
+     * @param format The {@link Bitmap.CompressFormat} of the large output, or {@code null} to
+     *               match the source image
+     * @return This ImageResizerConfig object to allow for method chaining
+     *
+     * @see ImageResizeConfig#getLargeOutputFormat()
+     * @see ImageResizeConfig#setOutputFormat(Bitmap.CompressFormat)
+     */
+    public ImageResizeConfig setLargeOutputFormat(Bitmap.CompressFormat format) {
+        largeOutputFormat = format;
+        return this;
+    }
+
+    /**
+     * Returns the quality the large output size is encoded with.
+     *
+     * @return The quality of the large output, from 0 to 100
+     *
+     * @see ImageResizeConfig#setLargeQuality(int)
+     */
+    public int getLargeQuality() {
+        return largeQuality;
+    }
+
+    /**
+     * Sets the quality the large output size is encoded with, as passed to
+     * {@link Bitmap#compress(Bitmap.CompressFormat, int, java.io.OutputStream)}. Lossless formats
+     * such as PNG ignore it. The default is {@code 100}. A quality of around {@code 85} usually
+     * makes JPEG images several times smaller without a visible difference.
+     *
+     * @param quality The quality of the large output, from 0 to 100
+     * @return This ImageResizerConfig object to allow for method chaining
+     *
+     * @see ImageResizeConfig#getLargeQuality()
+     * @see ImageResizeConfig#setQuality(int)
+     */
+    public ImageResizeConfig setLargeQuality(int quality) {
+        largeQuality = checkQuality(quality);
+        return this;
+    }
+
+    /**
+     * Returns the format the medium output size is encoded in.
+     *
+     * @return The {@link Bitmap.CompressFormat} of the medium output, or {@code null} if it
+     *         matches the source image
+     *
+     * @see ImageResizeConfig#setMediumOutputFormat(Bitmap.CompressFormat)
+     */
+    public Bitmap.CompressFormat getMediumOutputFormat() {
+        return mediumOutputFormat;
+    }
+
+    /**
+     * Sets the format the medium output size is encoded in. By default, JPEG images are encoded
+     * as JPEG and all other images as PNG, which keeps transparency. Images with transparency lose
+     * it when encoded as JPEG.
+     *
+     * @param format The {@link Bitmap.CompressFormat} of the medium output, or {@code null} to
+     *               match the source image
+     * @return This ImageResizerConfig object to allow for method chaining
+     *
+     * @see ImageResizeConfig#getMediumOutputFormat()
+     * @see ImageResizeConfig#setOutputFormat(Bitmap.CompressFormat)
+     */
+    public ImageResizeConfig setMediumOutputFormat(Bitmap.CompressFormat format) {
+        mediumOutputFormat = format;
+        return this;
+    }
+
+    /**
+     * Returns the quality the medium output size is encoded with.
+     *
+     * @return The quality of the medium output, from 0 to 100
+     *
+     * @see ImageResizeConfig#setMediumQuality(int)
+     */
+    public int getMediumQuality() {
+        return mediumQuality;
+    }
+
+    /**
+     * Sets the quality the medium output size is encoded with, as passed to
+     * {@link Bitmap#compress(Bitmap.CompressFormat, int, java.io.OutputStream)}. Lossless formats
+     * such as PNG ignore it. The default is {@code 100}. A quality of around {@code 85} usually
+     * makes JPEG images several times smaller without a visible difference.
+     *
+     * @param quality The quality of the medium output, from 0 to 100
+     * @return This ImageResizerConfig object to allow for method chaining
+     *
+     * @see ImageResizeConfig#getMediumQuality()
+     * @see ImageResizeConfig#setQuality(int)
+     */
+    public ImageResizeConfig setMediumQuality(int quality) {
+        mediumQuality = checkQuality(quality);
+        return this;
+    }
+
+    /**
+     * Returns the format the small output size is encoded in.
+     *
+     * @return The {@link Bitmap.CompressFormat} of the small output, or {@code null} if it
+     *         matches the source image
+     *
+     * @see ImageResizeConfig#setSmallOutputFormat(Bitmap.CompressFormat)
+     */
+    public Bitmap.CompressFormat getSmallOutputFormat() {
+        return smallOutputFormat;
+    }
+
+    /**
+     * Sets the format the small output size is encoded in. By default, JPEG images are encoded
+     * as JPEG and all other images as PNG, which keeps transparency. Images with transparency lose
+     * it when encoded as JPEG.
+     *
+     * @param format The {@link Bitmap.CompressFormat} of the small output, or {@code null} to
+     *               match the source image
+     * @return This ImageResizerConfig object to allow for method chaining
+     *
+     * @see ImageResizeConfig#getSmallOutputFormat()
+     * @see ImageResizeConfig#setOutputFormat(Bitmap.CompressFormat)
+     */
+    public ImageResizeConfig setSmallOutputFormat(Bitmap.CompressFormat format) {
+        smallOutputFormat = format;
+        return this;
+    }
+
+    /**
+     * Returns the quality the small output size is encoded with.
+     *
+     * @return The quality of the small output, from 0 to 100
+     *
+     * @see ImageResizeConfig#setSmallQuality(int)
+     */
+    public int getSmallQuality() {
+        return smallQuality;
+    }
+
+    /**
+     * Sets the quality the small output size is encoded with, as passed to
+     * {@link Bitmap#compress(Bitmap.CompressFormat, int, java.io.OutputStream)}. Lossless formats
+     * such as PNG ignore it. The default is {@code 100}. A quality of around {@code 85} usually
+     * makes JPEG images several times smaller without a visible difference.
+     *
+     * @param quality The quality of the small output, from 0 to 100
+     * @return This ImageResizerConfig object to allow for method chaining
+     *
+     * @see ImageResizeConfig#getSmallQuality()
+     * @see ImageResizeConfig#setQuality(int)
+     */
+    public ImageResizeConfig setSmallQuality(int quality) {
+        smallQuality = checkQuality(quality);
+        return this;
+    }
+
+    /**
+     * Sets the format all output sizes are encoded in.
+     *
+     * @param format The {@link Bitmap.CompressFormat} of every output, or {@code null} to match
+     *               the source image
+     * @return This ImageResizerConfig object to allow for method chaining
+     *
+     * @see ImageResizeConfig#setLargeOutputFormat(Bitmap.CompressFormat)
+     * @see ImageResizeConfig#setMediumOutputFormat(Bitmap.CompressFormat)
+     * @see ImageResizeConfig#setSmallOutputFormat(Bitmap.CompressFormat)
+     */
+    public ImageResizeConfig setOutputFormat(Bitmap.CompressFormat format) {
+        largeOutputFormat = format;
+        mediumOutputFormat = format;
+        smallOutputFormat = format;
+        return this;
+    }
+
+    /**
+     * Sets the quality all output sizes are encoded with.
+     *
+     * @param quality The quality of every output, from 0 to 100
+     * @return This ImageResizerConfig object to allow for method chaining
+     *
+     * @see ImageResizeConfig#setLargeQuality(int)
+     * @see ImageResizeConfig#setMediumQuality(int)
+     * @see ImageResizeConfig#setSmallQuality(int)
+     */
+    public ImageResizeConfig setQuality(int quality) {
+        largeQuality = mediumQuality = smallQuality = checkQuality(quality);
+        return this;
+    }
+
+    /**
+     * Returns the configured format of the output size {@code dimension} belongs to, or
+     * {@code null} if it matches the source image or {@code dimension} isn't one of this
+     * configuration's sizes.
+     */
+    Bitmap.CompressFormat getOutputFormat(Dimension dimension) {
+        if (dimension == largeDimension) {
+            return largeOutputFormat;
+        } else if (dimension == mediumDimension) {
+            return mediumOutputFormat;
+        } else if (dimension == smallDimension) {
+            return smallOutputFormat;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the configured quality of the output size {@code dimension} belongs to, or the
+     * default quality if {@code dimension} isn't one of this configuration's sizes.
+     */
+    int getQuality(Dimension dimension) {
+        if (dimension == largeDimension) {
+            return largeQuality;
+        } else if (dimension == mediumDimension) {
+            return mediumQuality;
+        } else if (dimension == smallDimension) {
+            return smallQuality;
+        }
+        return DEFAULT_QUALITY;
+    }
+
+    private static int checkQuality(int quality) {
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("quality must be between 0 and 100");
+        }
+        return quality;
+    }
 
     /**
      * A class to represent pixel dimensions for width and height of an object.
@@ -3,7 +3,9 @@ package com.isbx.androidtools.media;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.net.Uri;
 import android.util.Log;
 import android.support.media.ExifInterface;
@@ -14,8 +16,16 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.Locale;
 import java.util.TimeZone;
 
@@ -41,17 +51,28 @@ import java.util.TimeZone;
  * immediately after the scaling operation is completed, or copy them to a persistent location if
  * they are needed long-term.
  * </p>
+ *
+ * <p>
+ * Alternatively, a scaled image can be encoded directly to an {@link OutputStream} with
+ * {@link ImageResizer#scaleImage(Uri, ImageResizeConfig.Dimension, OutputStream)}, which creates no
+ * temporary files.
+ * </p>
  */
 public class ImageResizer {
 
     private static final int MAX_FILES = 10; // TODO handle files more intelligently
     private static final String FILE_NAME_FORMAT = "image%d.%s";
     private static final short JPEG_INITIAL_SHORT = (short) 0xffd8;
+    private static final long EXECUTOR_KEEP_ALIVE_MS = 30000;
+
+    private static ThreadPoolExecutor sharedExecutor;
 
     private Context context;
     private ImageResizeConfig config;
 
     private int savedFiles = 0;
+    private Executor executor;
+    private BitmapPool bitmapPool;
     
     /**
      * Creates a new ImageResizer that will use the given config to scale images.
@@ -88,31 +109,63 @@ public class ImageResizer {
      * disabled by the resize configuration or that fail during processing.
      * </p>
      *
+     * <p>
+     * Unless single decoding is disabled in the {@link ImageResizeConfig}, the source image is
+     * read and decoded only once, at the resolution the largest enabled size needs. Each smaller
+     * size is then scaled down from the previous one with filtering.
+     * </p>
+     *
+     * <p>
+     * The sizes are encoded in parallel on this ImageResizer's {@link Executor}, and
+     * {@code callback} is invoked on one of its threads.
+     * </p>
+     *
      * @param sourceUri The {@link Uri} of the image to be resized
      * @param callback An {@link ImageResizeCallback} that will be called once the scaling is
      *                 complete
      */
     public void resizeImage(final Uri sourceUri, final ImageResizeCallback callback) {
-        new Thread(new Runnable() {
+        final ImageResizeConfig.Dimension[] dimensions = {
+            config.isLargeOutputEnabled() ? config.getLargeDimension() : null,
+            config.isMediumOutputEnabled() ? config.getMediumDimension() : null,
+            config.isSmallOutputEnabled() ? config.getSmallDimension() : null
+        };
+        final Executor executor = getExecutor();
+
+        if (!config.isSingleDecodeEnabled()) {
+            final ResizeJob job = new ResizeJob(countNonNull(dimensions), callback);
+            for (int i = 0; i < dimensions.length; i++) {
+                if (dimensions[i] == null) {
+                    continue;
+                }
+                final int index = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        job.complete(index, scaleImage(sourceUri, dimensions[index]));
+                    }
+                });
+            }
+            return;
+        }
+
+        executor.execute(new Runnable() {
             @Override
             public void run() {
-                Uri largeUri = null;
-                Uri mediumUri = null;
-                Uri smallUri = null;
+                final ImageInfo info = probeImage(sourceUri);
+                final Bitmap[] bitmaps = info != null
+                    ? createScaledBitmaps(sourceUri, info, dimensions) : new Bitmap[dimensions.length];
 
-                if (config.isLargeOutputEnabled()) {
-                    largeUri = createLargeImage(sourceUri);
-                }
-                if (config.isMediumOutputEnabled()) {
-                    mediumUri = createMediumImage(sourceUri);
-                }
-                if (config.isSmallOutputEnabled()) {
-                    smallUri = createSmallImage(sourceUri);
+                // the scaled copies are independent of each other, so they are encoded in parallel
+                ResizeJob job = new ResizeJob(countNonNull(bitmaps), callback);
+                for (int i = 0; i < bitmaps.length; i++) {
+                    if (bitmaps[i] != null) {
+                        executor.execute(new EncodeTask(job, i, bitmaps[i],
+                            getOutputFormat(info.isJpeg, dimensions[i]), config.getQuality(dimensions[i])));
+                    }
                 }
-
-                callback.onResizeComplete(largeUri, mediumUri, smallUri);
             }
-        }).start();
+        });
     }
 
     /**
@@ -176,18 +229,16 @@ public class ImageResizer {
         }
     };
 
-    private Bitmap rotateImage(Uri imageUri, Bitmap sourceImage) throws IOException {
-        Bitmap bitmap = sourceImage;
-        ExifInterface exif = new ExifInterface(context.getContentResolver().openInputStream(imageUri));
-        int rotation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, 
-                                            ExifInterface.ORIENTATION_NORMAL);
-        int rotationInDegrees = exifToDegrees(rotation);
-
-        //rotate original image because camera takes them side ways
-        Matrix matrix = new Matrix();
-        matrix.postRotate(rotationInDegrees);
-        return Bitmap.createBitmap(bitmap , 0, 0, bitmap.getWidth(),
-            bitmap.getHeight(), matrix, true);
+    private int readRotation(Uri imageUri) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(imageUri);
+        try {
+            ExifInterface exif = new ExifInterface(in);
+            int rotation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                                                ExifInterface.ORIENTATION_NORMAL);
+            return exifToDegrees(rotation);
+        } finally {
+            in.close();
+        }
     }
 
     private int exifToDegrees(int exifOrientation) {
@@ -207,6 +258,13 @@ public class ImageResizer {
      * {@code targetDimension}.
      * </p>
      *
+     * <p>
+     * The copy is encoded in the format returned by
+     * {@link ImageResizer#getOutputFormat(Uri, ImageResizeConfig.Dimension)}, with the quality
+     * configured for {@code targetDimension} if it is one of the sizes of this ImageResizer's
+     * {@link ImageResizeConfig}.
+     * </p>
+     *
      * @param sourceUri The {@link Uri} of the image to be resized
      * @param targetDimension The desired dimensions of the copied image
      * @return A {@link Uri} pointing to the scaled image copy, or {@code null} if the operation
@@ -215,74 +273,416 @@ public class ImageResizer {
     public Uri scaleImage(Uri sourceUri, ImageResizeConfig.Dimension targetDimension) {
         Uri dstUri = null;
 
+        boolean isJpeg = isJpeg(sourceUri);
+        Bitmap out = createScaledBitmap(sourceUri, targetDimension, isJpeg);
+        if (out != null) {
+            dstUri = saveBitmap(out, getOutputFormat(isJpeg, targetDimension), config.getQuality(targetDimension));
+            release(out);
+        }
+
+        return dstUri;
+    }
+
+    /**
+     * Encodes {@code out} to the next temporary file. Since the bitmap is already upright and the
+     * encoded file contains no EXIF data, it will be displayed upright. Returns {@code null} if it
+     * could not be saved.
+     */
+    private Uri saveBitmap(Bitmap out, Bitmap.CompressFormat format, int quality) {
+        Uri dstUri = null;
+        OutputStream os = null;
+        try {
+            String fileName = nextFileName(format);
+            os = context.openFileOutput(fileName, Context.MODE_PRIVATE);
+            out.compress(format, quality, os);
+
+            dstUri = Uri.fromFile(context.getFileStreamPath(fileName));
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (os != null) {
+                try {
+                    os.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        return dstUri;
+    }
+
+    /**
+     * Scales the given image to the size specified by {@code targetDimension} and writes the
+     * encoded result to {@code os}, without creating a temporary file. The image is encoded in the
+     * format returned by {@link ImageResizer#getOutputFormat(Uri, ImageResizeConfig.Dimension)},
+     * with the quality configured for {@code targetDimension}. {@code os} is not closed by this
+     * method.
+     *
+     * <p>
+     * This transformation maintains the aspect ratio of the source image in the same way as
+     * {@link ImageResizer#scaleImage(Uri, ImageResizeConfig.Dimension)}. Since the scaled image is
+     * already rotated according to the source image's EXIF orientation, and the encoded output
+     * contains no EXIF data, it will be displayed upright.
+     * </p>
+     *
+     * @param sourceUri The {@link Uri} of the image to be resized
+     * @param targetDimension The desired dimensions of the scaled image
+     * @param os The {@link OutputStream} to write the encoded image to
+     * @return {@code true} if the scaled image was written to {@code os}, {@code false} if the
+     * operation failed
+     */
+    public boolean scaleImage(Uri sourceUri, ImageResizeConfig.Dimension targetDimension, OutputStream os) {
+        boolean isJpeg = isJpeg(sourceUri);
+        Bitmap out = createScaledBitmap(sourceUri, targetDimension, isJpeg);
+        if (out == null) {
+            return false;
+        }
+
+        try {
+            return out.compress(getOutputFormat(isJpeg, targetDimension), config.getQuality(targetDimension), os);
+        } finally {
+            release(out);
+        }
+    }
+
+    /**
+     * Scales the given image to each of the given dimensions and encodes the copies into memory,
+     * without creating temporary files. Unless single decoding is disabled in the
+     * {@link ImageResizeConfig}, the source image is decoded only once for all copies, as in
+     * {@link ImageResizer#resizeImage(Uri, ImageResizeCallback)}. Each copy is encoded in the
+     * format returned by {@link ImageResizer#getOutputFormat(Uri, ImageResizeConfig.Dimension)},
+     * with the quality configured for its dimensions.
+     *
+     * <p>
+     * The copies are encoded in parallel on this ImageResizer's {@link Executor}, and each one is
+     * passed to {@code callback} on one of its threads as soon as it is encoded, without waiting
+     * for the others.
+     * </p>
+     *
+     * @param sourceUri The {@link Uri} of the image to be resized
+     * @param targetDimensions The desired dimensions of each scaled copy
+     * @param callback An {@link EncodeCallback} that will be called once for each of
+     *                 {@code targetDimensions}
+     */
+    public void encodeImages(final Uri sourceUri, final ImageResizeConfig.Dimension[] targetDimensions,
+                             final EncodeCallback callback) {
+        final Executor executor = getExecutor();
+
+        if (!config.isSingleDecodeEnabled()) {
+            for (int i = 0; i < targetDimensions.length; i++) {
+                final int index = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        boolean encoded = targetDimensions[index] != null
+                            && scaleImage(sourceUri, targetDimensions[index], out);
+                        callback.onImageEncoded(index, encoded ? out.toByteArray() : null);
+                    }
+                });
+            }
+            return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ImageInfo info = probeImage(sourceUri);
+                final Bitmap[] bitmaps = info != null
+                    ? createScaledBitmaps(sourceUri, info, targetDimensions) : new Bitmap[targetDimensions.length];
+
+                // the scaled copies are independent of each other, so they are encoded in parallel
+                for (int i = 0; i < bitmaps.length; i++) {
+                    if (bitmaps[i] == null) {
+                        callback.onImageEncoded(i, null);
+                        continue;
+                    }
+                    final int index = i;
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            ByteArrayOutputStream out = new ByteArrayOutputStream();
+                            boolean encoded;
+                            try {
+                                ImageResizeConfig.Dimension dimension = targetDimensions[index];
+                                encoded = bitmaps[index].compress(getOutputFormat(info.isJpeg, dimension),
+                                    config.getQuality(dimension), out);
+                            } finally {
+                                release(bitmaps[index]);
+                            }
+                            callback.onImageEncoded(index, encoded ? out.toByteArray() : null);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the format that scaled copies of the given image will be encoded in when no output
+     * format is configured. JPEG images are encoded as JPEG, and all other images as PNG.
+     *
+     * @param sourceUri The {@link Uri} of the image to be resized
+     * @return The {@link Bitmap.CompressFormat} of scaled copies of the image
+     *
+     * @see ImageResizer#getOutputFormat(Uri, ImageResizeConfig.Dimension)
+     */
+    public Bitmap.CompressFormat getOutputFormat(Uri sourceUri) {
+        return getOutputFormat(isJpeg(sourceUri), null);
+    }
+
+    /**
+     * Returns the format that a copy of the given image scaled to {@code targetDimension} will be
+     * encoded in. This is the output format configured for that size in this ImageResizer's
+     * {@link ImageResizeConfig}, or the format returned by {@link ImageResizer#getOutputFormat(Uri)}
+     * if there is none.
+     *
+     * @param sourceUri The {@link Uri} of the image to be resized
+     * @param targetDimension The dimensions of the scaled copy
+     * @return The {@link Bitmap.CompressFormat} of the scaled copy
+     *
+     * @see ImageResizeConfig#setLargeOutputFormat(Bitmap.CompressFormat)
+     */
+    public Bitmap.CompressFormat getOutputFormat(Uri sourceUri, ImageResizeConfig.Dimension targetDimension) {
+        Bitmap.CompressFormat format = config.getOutputFormat(targetDimension);
+        return format != null ? format : getOutputFormat(sourceUri);
+    }
+
+    private Bitmap.CompressFormat getOutputFormat(boolean isJpeg, ImageResizeConfig.Dimension targetDimension) {
+        Bitmap.CompressFormat format = config.getOutputFormat(targetDimension);
+        if (format != null) {
+            return format;
+        }
+        return isJpeg ? Bitmap.CompressFormat.JPEG : Bitmap.CompressFormat.PNG;
+    }
+
+    private boolean isJpeg(Uri sourceUri) {
+        try {
+            return imageIsJPEG(sourceUri);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private synchronized String nextFileName(Bitmap.CompressFormat format) {
+        if (savedFiles >= MAX_FILES) {
+            savedFiles = 0;
+        }
+        return String.format(Locale.US, FILE_NAME_FORMAT, savedFiles++, getExtension(format));
+    }
+
+    /**
+     * Returns the file extension of images encoded in the given format.
+     *
+     * @param format The {@link Bitmap.CompressFormat} of an image
+     * @return The extension, without a leading period
+     */
+    public static String getExtension(Bitmap.CompressFormat format) {
+        if (format == Bitmap.CompressFormat.JPEG) {
+            return "jpg";
+        } else if (format == Bitmap.CompressFormat.WEBP) {
+            return "webp";
+        }
+        return "png";
+    }
+
+    /**
+     * Decodes the given image and scales it to the size specified by {@code targetDimension},
+     * rotating JPEG images according to their EXIF orientation in the same transform. Returns
+     * {@code null} if the image could not be decoded.
+     */
+    private Bitmap createScaledBitmap(Uri sourceUri, ImageResizeConfig.Dimension targetDimension, boolean isJpeg) {
+        int rotation = 0;
+        if (isJpeg) {
+            try {
+                rotation = readRotation(sourceUri);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
         Bitmap bm = null;
         try {
             BitmapFactory.Options options = new BitmapFactory.Options();
             options.inJustDecodeBounds = true;
             BitmapFactory.decodeStream(context.getContentResolver().openInputStream(sourceUri), null, options);
 
-            options.inSampleSize = calculateInSampleSize(options, targetDimension.getWidth(), targetDimension.getHeight());
-            options.inJustDecodeBounds = false;
-
-            bm = BitmapFactory.decodeStream(context.getContentResolver().openInputStream(sourceUri), null, options);
+            int sampleSize = calculateInSampleSize(options, targetDimension.getWidth(), targetDimension.getHeight());
+            bm = decodeBitmap(sourceUri, options, sampleSize);
         } catch (FileNotFoundException e) {
             e.printStackTrace();
         }
 
-        if (bm != null) {
-            Bitmap out = scaleBitmap(bm, targetDimension);
-            if (bm != out) {
-                // output maybe the same bitmap if scaling wasn't needed, otherwise we can recycle it
-                bm.recycle();
+        if (bm == null) {
+            return null;
+        }
+
+        Bitmap out = scaleBitmap(bm, targetDimension, rotation, true, bitmapPool);
+        if (bm != out) {
+            // output maybe the same bitmap if scaling wasn't needed, otherwise we can recycle it
+            release(bm);
+        }
+
+        return out;
+    }
+
+    /**
+     * Creates upright scaled copies of the given image for each of the given dimensions. The image
+     * is decoded only once, and each copy is scaled down from the previous, larger one when that
+     * copy is at least as large as the new one in both dimensions, or from the decoded image
+     * otherwise. Returns a bitmap for each dimension, which is {@code null} for {@code null}
+     * dimensions and copies that failed.
+     */
+    private Bitmap[] createScaledBitmaps(Uri sourceUri, ImageInfo info, ImageResizeConfig.Dimension... dimensions) {
+        Bitmap[] bitmaps = new Bitmap[dimensions.length];
+
+        // scale from the largest dimension down, so every copy can be made from the previous one
+        List<Integer> order = new ArrayList<>();
+        int sampleSize = Integer.MAX_VALUE;
+        for (int i = 0; i < dimensions.length; i++) {
+            if (dimensions[i] != null) {
+                order.add(i);
+                sampleSize = Math.min(sampleSize, calculateInSampleSize(info.bounds,
+                    dimensions[i].getWidth(), dimensions[i].getHeight()));
             }
+        }
+        if (order.isEmpty()) {
+            return bitmaps;
+        }
+        final ImageResizeConfig.Dimension[] sorted = dimensions;
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long areaA = (long) sorted[a].getWidth() * sorted[a].getHeight();
+                long areaB = (long) sorted[b].getWidth() * sorted[b].getHeight();
+                return areaA > areaB ? -1 : (areaA == areaB ? 0 : 1);
+            }
+        });
 
-            OutputStream os = null;
-            try {
-                if (savedFiles >= MAX_FILES) {
-                    savedFiles = 0;
-                }
+        Bitmap decoded = decodeBitmap(sourceUri, info.bounds, sampleSize);
+        if (decoded == null) {
+            return bitmaps;
+        }
 
-                boolean isJpeg = false;
+        // the decoded bitmap is scaled and rotated in one transform, after which every copy is
+        // already upright and is scaled from the previous copy within the rotated dimensions.
+        // A smaller area doesn't mean a copy fits within the previous one when the aspect ratios
+        // differ, so those copies are scaled from the decoded bitmap instead of being upscaled
+        boolean decodedIsOutput = false;
+        Bitmap previous = null;
+        for (int i : order) {
+            ImageResizeConfig.Dimension upright = rotate(dimensions[i], info.rotation);
+            Bitmap scaled;
+            if (previous != null && fitsWithin(previous, upright)) {
+                scaled = scaleBitmap(previous, upright, 0, true, bitmapPool);
+            } else {
+                scaled = scaleBitmap(decoded, dimensions[i], info.rotation, true, bitmapPool);
+            }
+            if (scaled == previous || (scaled == decoded && decodedIsOutput)) {
+                // same size as an earlier copy, but every output needs a bitmap of its own
+                scaled = scaled.copy(getConfig(scaled), bitmapPool != null);
+            } else if (scaled == decoded) {
+                decodedIsOutput = true;
+            }
+
+            // the scaled copy is the output itself, and must outlive this loop
+            bitmaps[i] = scaled;
+            previous = scaled;
+        }
+
+        if (!decodedIsOutput) {
+            release(decoded);
+        }
+        return bitmaps;
+    }
+
+    /**
+     * Decodes the given image, whose dimensions are represented by {@code bounds}, with the given
+     * sample size, reusing a bitmap from the {@link BitmapPool} if there is one.
+     */
+    private Bitmap decodeBitmap(Uri sourceUri, BitmapFactory.Options bounds, int sampleSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        if (bitmapPool != null) {
+            options.inMutable = true;
+            options.inBitmap = bitmapPool.getForDecode((bounds.outWidth + sampleSize - 1) / sampleSize,
+                (bounds.outHeight + sampleSize - 1) / sampleSize, Bitmap.Config.ARGB_8888, sampleSize);
+        }
+
+        try {
+            return decodeBitmap(sourceUri, options);
+        } catch (IllegalArgumentException e) {
+            if (options.inBitmap == null) {
+                throw e;
+            }
+            // the decoder rejected the pooled bitmap, so decode into a new one instead
+            bitmapPool.put(options.inBitmap);
+            options.inBitmap = null;
+            return decodeBitmap(sourceUri, options);
+        }
+    }
+
+    private Bitmap decodeBitmap(Uri sourceUri, BitmapFactory.Options options) {
+        InputStream in = null;
+        try {
+            in = context.getContentResolver().openInputStream(sourceUri);
+            Bitmap bitmap = BitmapFactory.decodeStream(in, null, options);
+            if (bitmap == null && options.inBitmap != null) {
+                bitmapPool.put(options.inBitmap);
+            }
+            return bitmap;
+        } catch (FileNotFoundException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (in != null) {
                 try {
-                    isJpeg = imageIsJPEG(sourceUri);
-                } catch(Exception e) {
+                    in.close();
+                } catch (IOException e) {
                     e.printStackTrace();
                 }
+            }
+        }
+    }
 
-                String fileName = String.format(Locale.US, FILE_NAME_FORMAT, savedFiles++, isJpeg ? "jpg" : "png");
-                os = context.openFileOutput(fileName, Context.MODE_PRIVATE);
-
-                if (isJpeg) {
-                    out = rotateImage( sourceUri, out);
-                    out.compress(Bitmap.CompressFormat.JPEG, 100, os);
-                } else {
-                    out.compress(Bitmap.CompressFormat.PNG, 100, os);
-                }
+    /**
+     * Reads the format and bounds of the given image from a single stream, and the EXIF
+     * orientation of JPEG images. Returns {@code null} if the image could not be read.
+     */
+    private ImageInfo probeImage(Uri sourceUri) {
+        ImageInfo info = new ImageInfo();
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(context.getContentResolver().openInputStream(sourceUri));
+            in.mark(2);
+            info.isJpeg = (short) ((in.read() << 8) | in.read()) == JPEG_INITIAL_SHORT;
+            in.reset();
 
-                dstUri = Uri.fromFile(context.getFileStreamPath(fileName));
+            info.bounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeStream(in, null, info.bounds);
+            if (info.bounds.outWidth <= 0 || info.bounds.outHeight <= 0) {
+                return null;
+            }
 
-                if (isJpeg) {
-                    ExifInterface exif = new ExifInterface(context.getContentResolver().openInputStream(dstUri));
-                    exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(ExifInterface.ORIENTATION_NORMAL));
-                    exif.setAttribute(ExifInterface.TAG_DATETIME_ORIGINAL, String.valueOf(new Date().getTime()));
-                    exif.saveAttributes();
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                if (os != null) {
-                    try {
-                        os.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+            if (info.isJpeg) {
+                info.rotation = readRotation(sourceUri);
+            }
+            return info;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
                 }
             }
-
-            out.recycle();
         }
-
-        return dstUri;
     }
 
     /**
@@ -337,20 +737,109 @@ public class ImageResizer {
      * @return The scaled {@link Bitmap} object
      */
     public static Bitmap scaleBitmap(Bitmap source, ImageResizeConfig.Dimension targetDimension) {
+        return scaleBitmap(source, targetDimension, 0, false, null);
+    }
+
+    /**
+     * Scales {@code source} to fit {@code targetDimension}, then rotates it clockwise by
+     * {@code rotation} degrees, as a single transform into one destination bitmap.
+     */
+    private static Bitmap scaleBitmap(Bitmap source, ImageResizeConfig.Dimension targetDimension, int rotation,
+                                      boolean filter, BitmapPool pool) {
+        ImageResizeConfig.Dimension fitted = fit(source, targetDimension);
+        int width = fitted.getWidth();
+        int height = fitted.getHeight();
+
+        if (rotation == 0) {
+            if (pool == null) {
+                return Bitmap.createScaledBitmap(source, width, height, filter);
+            }
+            if (width == source.getWidth() && height == source.getHeight()) {
+                return source;
+            }
+        }
+
+        Matrix matrix = new Matrix();
+        matrix.setScale(width / (float) source.getWidth(), height / (float) source.getHeight());
+        matrix.postRotate(rotation);
+        if (pool == null) {
+            // createBitmap moves the transformed image back to the origin by itself
+            return Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(), matrix, filter);
+        }
+
+        // move the rotated image back to the origin
+        boolean swap = rotation == 90 || rotation == 270;
+        if (rotation == 90) {
+            matrix.postTranslate(height, 0);
+        } else if (rotation == 180) {
+            matrix.postTranslate(width, height);
+        } else if (rotation == 270) {
+            matrix.postTranslate(0, width);
+        }
+        Bitmap scaled = pool.get(swap ? height : width, swap ? width : height, getConfig(source));
+        new Canvas(scaled).drawBitmap(source, matrix, filter ? new Paint(Paint.FILTER_BITMAP_FLAG) : null);
+        return scaled;
+    }
+
+    /**
+     * Returns the size {@code source} is scaled to, keeping its aspect ratio, to fit
+     * {@code targetDimension}.
+     */
+    private static ImageResizeConfig.Dimension fit(Bitmap source, ImageResizeConfig.Dimension targetDimension) {
         float targetRatio = targetDimension.getWidth() / (float) targetDimension.getHeight();
         float srcRatio = source.getWidth() / (float) source.getHeight();
 
-        int width;
-        int height;
         if (targetRatio > srcRatio) {
-            height = targetDimension.getHeight();
-            width = (int) (height * srcRatio);
+            int height = targetDimension.getHeight();
+            return new ImageResizeConfig.Dimension((int) (height * srcRatio), height);
+        }
+        int width = targetDimension.getWidth();
+        return new ImageResizeConfig.Dimension(width, (int) (width / srcRatio));
+    }
+
+    /**
+     * Returns whether {@code source} can be scaled to fit {@code targetDimension} without being
+     * enlarged in either dimension.
+     */
+    private static boolean fitsWithin(Bitmap source, ImageResizeConfig.Dimension targetDimension) {
+        ImageResizeConfig.Dimension fitted = fit(source, targetDimension);
+        return fitted.getWidth() <= source.getWidth() && fitted.getHeight() <= source.getHeight();
+    }
+
+    /**
+     * Returns the dimensions an image rotated by {@code rotation} degrees must fit in for its
+     * unrotated form to fit {@code dimension}.
+     */
+    private static ImageResizeConfig.Dimension rotate(ImageResizeConfig.Dimension dimension, int rotation) {
+        if (rotation == 90 || rotation == 270) {
+            return new ImageResizeConfig.Dimension(dimension.getHeight(), dimension.getWidth());
+        }
+        return dimension;
+    }
+
+    private static Bitmap.Config getConfig(Bitmap bitmap) {
+        return bitmap.getConfig() != null ? bitmap.getConfig() : Bitmap.Config.ARGB_8888;
+    }
+
+    /**
+     * Returns a bitmap this ImageResizer no longer uses to the {@link BitmapPool}, or recycles it
+     * if there is none.
+     */
+    private void release(Bitmap bitmap) {
+        if (bitmapPool != null) {
+            bitmapPool.put(bitmap);
         } else {
-            width = targetDimension.getWidth();
-            height = (int) (width / srcRatio);
+            bitmap.recycle();
         }
+    }
 
-        return Bitmap.createScaledBitmap(source, width, height, false);
+    /**
+     * Returns the {@link ImageResizeConfig} this ImageResizer uses to scale images.
+     *
+     * @return The {@link ImageResizeConfig} of this ImageResizer
+     */
+    public ImageResizeConfig getConfig() {
+        return config;
     }
 
     /**
@@ -364,10 +853,143 @@ public class ImageResizer {
             context.deleteFile(fileName);
             fileName = String.format(Locale.US, FILE_NAME_FORMAT, i, "png");
             context.deleteFile(fileName);
+            fileName = String.format(Locale.US, FILE_NAME_FORMAT, i, "webp");
+            context.deleteFile(fileName);
         }
         savedFiles = 0;
     }
 
+    /**
+     * Returns the {@link Executor} this ImageResizer scales and encodes images on.
+     *
+     * @return The {@link Executor} set with {@link ImageResizer#setExecutor(Executor)}, or a
+     *         shared executor with a thread per CPU core by default
+     *
+     * @see ImageResizer#setExecutor(Executor)
+     */
+    public Executor getExecutor() {
+        return executor != null ? executor : getSharedExecutor();
+    }
+
+    /**
+     * Sets the {@link Executor} to scale and encode images on. By default, all ImageResizers share
+     * an executor with a thread per CPU core, so encoding is spread across the cores without a
+     * burst of resize requests creating more threads than can run at once.
+     *
+     * @param executor The {@link Executor} to use, or {@code null} to use the shared executor
+     *
+     * @see ImageResizer#getExecutor()
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the {@link BitmapPool} this ImageResizer decodes and scales images into.
+     *
+     * @return The {@link BitmapPool}, or {@code null} if every bitmap is newly allocated
+     *
+     * @see ImageResizer#setBitmapPool(BitmapPool)
+     */
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    /**
+     * Sets a {@link BitmapPool} to decode and scale images into. The decoded and scaled
+     * bitmaps of every resize operation are returned to the pool once they are encoded, so
+     * resizing a series of photos reuses the same memory instead of allocating tens of megabytes
+     * per image and triggering garbage collection.
+     *
+     * @param bitmapPool The {@link BitmapPool} to use, or {@code null} to allocate every bitmap
+     *
+     * @see ImageResizer#getBitmapPool()
+     */
+    public void setBitmapPool(BitmapPool bitmapPool) {
+        this.bitmapPool = bitmapPool;
+    }
+
+    private static synchronized Executor getSharedExecutor() {
+        if (sharedExecutor == null) {
+            // scaling and encoding are CPU bound, so there's no point in running more of them than cores
+            int threads = Runtime.getRuntime().availableProcessors();
+            sharedExecutor = new ThreadPoolExecutor(threads, threads, EXECUTOR_KEEP_ALIVE_MS,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+            sharedExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sharedExecutor;
+    }
+
+    private static int countNonNull(Object[] values) {
+        int count = 0;
+        for (Object value : values) {
+            if (value != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Collects the output Uris of a {@link ImageResizer#resizeImage(Uri, ImageResizeCallback)}
+     * call, and invokes its callback once the last output is done.
+     */
+    private static class ResizeJob {
+        private final Uri[] uris = new Uri[3];
+        private final AtomicInteger remaining;
+        private final ImageResizeCallback callback;
+
+        ResizeJob(int outputs, ImageResizeCallback callback) {
+            this.remaining = new AtomicInteger(outputs);
+            this.callback = callback;
+            if (outputs == 0) {
+                callback.onResizeComplete(null, null, null);
+            }
+        }
+
+        void complete(int index, Uri uri) {
+            uris[index] = uri;
+            if (remaining.decrementAndGet() == 0) {
+                callback.onResizeComplete(uris[0], uris[1], uris[2]);
+            }
+        }
+    }
+
+    /**
+     * Encodes a scaled bitmap to a temporary file and recycles it.
+     */
+    private class EncodeTask implements Runnable {
+        private final ResizeJob job;
+        private final int index;
+        private final Bitmap bitmap;
+        private final Bitmap.CompressFormat format;
+        private final int quality;
+
+        EncodeTask(ResizeJob job, int index, Bitmap bitmap, Bitmap.CompressFormat format, int quality) {
+            this.job = job;
+            this.index = index;
+            this.bitmap = bitmap;
+            this.format = format;
+            this.quality = quality;
+        }
+
+        @Override
+        public void run() {
+            Uri uri = saveBitmap(bitmap, format, quality);
+            release(bitmap);
+            job.complete(index, uri);
+        }
+    }
+
+    /**
+     * The properties of a source image needed to scale it, read before it is decoded.
+     */
+    private static class ImageInfo {
+        private final BitmapFactory.Options bounds = new BitmapFactory.Options();
+        private boolean isJpeg;
+        private int rotation;
+    }
+
     /**
      * Callback interface for asynchronous resize operations.
      *
@@ -383,4 +1005,22 @@ public class ImageResizer {
          */
         void onResizeComplete(Uri largeUri, Uri mediumUri, Uri smallUri);
     }
+
+    /**
+     * Callback interface for asynchronous encode operations, which receives each encoded copy as
+     * soon as it is ready.
+     *
+     * @see ImageResizer#encodeImages(Uri, ImageResizeConfig.Dimension[], EncodeCallback)
+     */
+    public interface EncodeCallback {
+        /**
+         * This method will be invoked once for each requested copy, on a thread of the
+         * {@link ImageResizer}'s {@link Executor}.
+         *
+         * @param index The index of the copy's dimensions in the requested dimensions
+         * @param data The encoded bytes of the copy, or {@code null} if its dimensions were
+         *             {@code null} or it could not be created
+         */
+        void onImageEncoded(int index, byte[] data);
+    }
 }
@@ -0,0 +1,19 @@
+package com.isbx.androidtools.networking;
+
+/**
+ * An extension of {@link UploadMetricsListener} that is additionally notified when an
+ * {@link UploadManager} with an {@link AdaptiveConcurrencyPolicy} changes its concurrency limit.
+ * Like the other metrics, this is invoked on a background thread.
+ */
+public interface AdaptiveConcurrencyListener extends UploadMetricsListener {
+    /**
+     * This method is invoked whenever the adaptive concurrency limit changes.
+     *
+     * @param previousLimit The previous maximum number of concurrent uploads
+     * @param limit The new maximum number of concurrent uploads
+     * @param throughput The combined throughput in bytes per second of the uploads that led to the
+     *                   change
+     * @param errorRate The fraction of those uploads that failed due to congestion
+     */
+    void onConcurrencyChanged(int previousLimit, int limit, long throughput, double errorRate);
+}
@@ -0,0 +1,153 @@
+package com.isbx.androidtools.networking;
+
+/**
+ * A configuration class for how an {@link UploadManager} should adapt the number of concurrent
+ * uploads to the observed network performance, using additive increase and multiplicative
+ * decrease:
+ *
+ * <ul>
+ * <li>The limit starts at {@link #getInitialConcurrentUploads()}.</li>
+ * <li>Once as many uploads as the current limit have finished, their combined throughput is
+ * measured. If the previous step raised the limit but throughput didn't improve by at least
+ * {@link #getMinThroughputGain()}, the limit is lowered by one, since the link is saturated.
+ * Otherwise the limit is raised by one.</li>
+ * <li>Whenever an upload fails in a way that indicates congestion, such as a timeout, a connection
+ * reset, or a 429 or 5xx response, the limit is multiplied by {@link #getDecreaseFactor()}.
+ * Further failures of uploads that were already in flight don't lower it again.</li>
+ * </ul>
+ *
+ * <p>
+ * The limit never exceeds {@link UploadManager#getMaxConcurrentUploads()}, which should therefore
+ * be raised to the highest concurrency worth trying, and is reset whenever the
+ * {@link ConnectivityMonitor} reports a new network.
+ * </p>
+ *
+ * @see UploadManager#setAdaptiveConcurrency(AdaptiveConcurrencyPolicy)
+ */
+public class AdaptiveConcurrencyPolicy {
+
+    private static final int DEFAULT_MIN_CONCURRENT_UPLOADS = 1;
+    private static final int DEFAULT_INITIAL_CONCURRENT_UPLOADS = 2;
+    private static final double DEFAULT_DECREASE_FACTOR = 0.5;
+    private static final double DEFAULT_MIN_THROUGHPUT_GAIN = 0.05;
+
+    private int minConcurrentUploads = DEFAULT_MIN_CONCURRENT_UPLOADS;
+    private int initialConcurrentUploads = DEFAULT_INITIAL_CONCURRENT_UPLOADS;
+    private double decreaseFactor = DEFAULT_DECREASE_FACTOR;
+    private double minThroughputGain = DEFAULT_MIN_THROUGHPUT_GAIN;
+
+    /**
+     * Returns the lowest number of concurrent uploads the limit can be lowered to.
+     *
+     * @return The minimum number of concurrent uploads
+     *
+     * @see AdaptiveConcurrencyPolicy#setMinConcurrentUploads(int)
+     */
+    public int getMinConcurrentUploads() {
+        return minConcurrentUploads;
+    }
+
+    /**
+     * Sets the lowest number of concurrent uploads the limit can be lowered to. The default is
+     * {@code 1}.
+     *
+     * @param minConcurrentUploads The minimum number of concurrent uploads, must be greater than
+     *                             zero
+     * @return This AdaptiveConcurrencyPolicy object to allow for method chaining
+     *
+     * @see AdaptiveConcurrencyPolicy#getMinConcurrentUploads()
+     */
+    public AdaptiveConcurrencyPolicy setMinConcurrentUploads(int minConcurrentUploads) {
+        if (minConcurrentUploads < 1) {
+            throw new IllegalArgumentException("minConcurrentUploads must be greater than zero");
+        }
+        this.minConcurrentUploads = minConcurrentUploads;
+        return this;
+    }
+
+    /**
+     * Returns the number of concurrent uploads the limit starts at.
+     *
+     * @return The initial number of concurrent uploads
+     *
+     * @see AdaptiveConcurrencyPolicy#setInitialConcurrentUploads(int)
+     */
+    public int getInitialConcurrentUploads() {
+        return initialConcurrentUploads;
+    }
+
+    /**
+     * Sets the number of concurrent uploads the limit starts at, and returns to whenever the
+     * network changes. The default is {@code 2}.
+     *
+     * @param initialConcurrentUploads The initial number of concurrent uploads, must be greater
+     *                                 than zero
+     * @return This AdaptiveConcurrencyPolicy object to allow for method chaining
+     *
+     * @see AdaptiveConcurrencyPolicy#getInitialConcurrentUploads()
+     */
+    public AdaptiveConcurrencyPolicy setInitialConcurrentUploads(int initialConcurrentUploads) {
+        if (initialConcurrentUploads < 1) {
+            throw new IllegalArgumentException("initialConcurrentUploads must be greater than zero");
+        }
+        this.initialConcurrentUploads = initialConcurrentUploads;
+        return this;
+    }
+
+    /**
+     * Returns the factor the limit is multiplied by when an upload fails due to congestion.
+     *
+     * @return The multiplicative decrease factor
+     *
+     * @see AdaptiveConcurrencyPolicy#setDecreaseFactor(double)
+     */
+    public double getDecreaseFactor() {
+        return decreaseFactor;
+    }
+
+    /**
+     * Sets the factor the limit is multiplied by when an upload fails due to congestion. The
+     * default is {@code 0.5}.
+     *
+     * @param decreaseFactor The multiplicative decrease factor, must be between zero and one
+     * @return This AdaptiveConcurrencyPolicy object to allow for method chaining
+     *
+     * @see AdaptiveConcurrencyPolicy#getDecreaseFactor()
+     */
+    public AdaptiveConcurrencyPolicy setDecreaseFactor(double decreaseFactor) {
+        if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+            throw new IllegalArgumentException("decreaseFactor must be between zero and one");
+        }
+        this.decreaseFactor = decreaseFactor;
+        return this;
+    }
+
+    /**
+     * Returns the relative throughput improvement required to keep a raised limit.
+     *
+     * @return The minimum throughput gain as a fraction
+     *
+     * @see AdaptiveConcurrencyPolicy#setMinThroughputGain(double)
+     */
+    public double getMinThroughputGain() {
+        return minThroughputGain;
+    }
+
+    /**
+     * Sets the relative throughput improvement required to keep a raised limit. If raising the
+     * limit by one improves the combined throughput of the uploads by less than this fraction,
+     * the limit is lowered again. The default is {@code 0.05}, a 5% improvement.
+     *
+     * @param minThroughputGain The minimum throughput gain as a fraction
+     * @return This AdaptiveConcurrencyPolicy object to allow for method chaining
+     *
+     * @see AdaptiveConcurrencyPolicy#getMinThroughputGain()
+     */
+    public AdaptiveConcurrencyPolicy setMinThroughputGain(double minThroughputGain) {
+        if (minThroughputGain < 0) {
+            throw new IllegalArgumentException("minThroughputGain cannot be negative");
+        }
+        this.minThroughputGain = minThroughputGain;
+        return this;
+    }
+}
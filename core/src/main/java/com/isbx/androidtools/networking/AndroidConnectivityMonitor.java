@@ -0,0 +1,98 @@
+package com.isbx.androidtools.networking;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.telephony.TelephonyManager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A {@link ConnectivityMonitor} backed by the system's {@link ConnectivityManager}. Networks the
+ * system reports as metered are {@link ConnectivityMonitor.NetworkType#METERED}, or
+ * {@link ConnectivityMonitor.NetworkType#CONSTRAINED} for 2G and early 3G cellular connections.
+ *
+ * <p>
+ * Network changes are received through a {@link ConnectivityManager#CONNECTIVITY_ACTION}
+ * broadcast receiver, which is registered while the monitor has listeners. This requires the
+ * {@code android.permission.ACCESS_NETWORK_STATE} permission, which this library's manifest
+ * declares.
+ * </p>
+ */
+public class AndroidConnectivityMonitor implements ConnectivityMonitor {
+
+    private final Context context;
+    private final ConnectivityManager connectivityManager;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            NetworkType networkType = getNetworkType();
+            for (Listener listener : listeners) {
+                listener.onNetworkChanged(networkType);
+            }
+        }
+    };
+
+    /**
+     * Creates a new AndroidConnectivityMonitor.
+     *
+     * @param context The current {@link Context}. Its application context is used to register
+     *                the broadcast receiver, so it is safe to pass an Activity.
+     */
+    public AndroidConnectivityMonitor(Context context) {
+        this.context = context.getApplicationContext();
+        this.connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    @Override
+    public NetworkType getNetworkType() {
+        NetworkInfo info = connectivityManager.getActiveNetworkInfo();
+        if (info == null || !info.isConnected()) {
+            return NetworkType.NONE;
+        }
+        if (!connectivityManager.isActiveNetworkMetered()) {
+            return NetworkType.UNMETERED;
+        }
+        if (info.getType() == ConnectivityManager.TYPE_MOBILE && isConstrained(info.getSubtype())) {
+            return NetworkType.CONSTRAINED;
+        }
+        return NetworkType.METERED;
+    }
+
+    @Override
+    public synchronized void addListener(Listener listener) {
+        if (listeners.isEmpty()) {
+            context.registerReceiver(receiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        }
+        listeners.add(listener);
+    }
+
+    @Override
+    public synchronized void removeListener(Listener listener) {
+        if (listeners.remove(listener) && listeners.isEmpty()) {
+            context.unregisterReceiver(receiver);
+        }
+    }
+
+    private static boolean isConstrained(int subtype) {
+        switch (subtype) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+            case TelephonyManager.NETWORK_TYPE_UMTS:
+            case TelephonyManager.NETWORK_TYPE_EVDO_0:
+            case TelephonyManager.NETWORK_TYPE_EVDO_A:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
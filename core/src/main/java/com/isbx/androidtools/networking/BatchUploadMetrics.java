@@ -0,0 +1,114 @@
+package com.isbx.androidtools.networking;
+
+/**
+ * Performance metrics of a single request made through an {@link UploadManager}, summarizing the
+ * {@link FileUploadMetrics} of its files. All times are in milliseconds.
+ *
+ * @see UploadMetricsListener#onBatchMetrics(BatchUploadMetrics)
+ */
+public class BatchUploadMetrics {
+    UploadHandle.Status status;
+    int fileCount;
+    int successCount;
+    int deduplicatedCount;
+    long credentialsTime;
+    long bytes;
+    long duration;
+    int retryCount;
+
+    BatchUploadMetrics() {
+    }
+
+    /**
+     * Returns how the request ended.
+     *
+     * @return {@link UploadHandle.Status#COMPLETED}, {@link UploadHandle.Status#FAILED}, or
+     *         {@link UploadHandle.Status#CANCELLED}
+     */
+    public UploadHandle.Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the number of files in the request.
+     *
+     * @return The number of files
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Returns the number of files of the request that were uploaded, including those uploaded
+     * before the request was resumed and those found in the {@link UploadIndex}.
+     *
+     * @return The number of successful files
+     */
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * Returns the number of files of the request that were not uploaded.
+     *
+     * @return The number of failed or cancelled files
+     */
+    public int getFailureCount() {
+        return fileCount - successCount;
+    }
+
+    /**
+     * Returns the number of files of the request that were found in the {@link UploadIndex}.
+     *
+     * @return The number of deduplicated files
+     */
+    public int getDeduplicatedCount() {
+        return deduplicatedCount;
+    }
+
+    /**
+     * Returns how long it took to retrieve the credentials for the request.
+     *
+     * @return The credentials fetch time
+     */
+    public long getCredentialsTime() {
+        return credentialsTime;
+    }
+
+    /**
+     * Returns the number of bytes sent in the last attempt of every file of the request.
+     *
+     * @return The number of bytes uploaded
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns how long the request took from the moment it started until all of its files
+     * finished.
+     *
+     * @return The total duration
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the effective throughput of the request as a whole.
+     *
+     * @return The throughput in bytes per second, or {@code 0} if nothing was sent
+     */
+    public long getThroughput() {
+        return duration > 0 ? bytes * 1000 / duration : 0;
+    }
+
+    /**
+     * Returns the total number of retries of all files of the request.
+     *
+     * @return The number of retries
+     */
+    public int getRetryCount() {
+        return retryCount;
+    }
+}
@@ -0,0 +1,138 @@
+package com.isbx.androidtools.networking;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An {@link InputStream} that computes the MD5 digest, and optionally the SHA-256 digest, of the
+ * bytes read from it. Placed between the source and the request body, it checksums a file in the
+ * same pass that uploads it.
+ */
+class ChecksumInputStream extends FilterInputStream {
+    private final MessageDigest md5;
+    private final MessageDigest sha256;
+    private String md5Hex;
+    private String sha256Hex;
+
+    /**
+     * Creates a new ChecksumInputStream.
+     *
+     * @param in The stream to read from
+     * @param sha256 Whether to compute the SHA-256 digest as well
+     */
+    ChecksumInputStream(InputStream in, boolean sha256) throws IOException {
+        super(in);
+        this.md5 = getDigest("MD5");
+        this.sha256 = sha256 ? getDigest("SHA-256") : null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            update(new byte[]{(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        int read = super.read(buffer, offset, count);
+        if (read > 0) {
+            update(buffer, offset, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        // skipped bytes still have to be digested
+        byte[] buffer = new byte[(int) Math.min(count, 8192)];
+        long skipped = 0;
+        while (skipped < count) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, count - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Returns the hex encoded MD5 digest of the bytes read. The stream must not be read any further
+     * afterwards.
+     */
+    String getMd5() {
+        if (md5Hex == null) {
+            md5Hex = DigestedStream.toHex(md5.digest());
+        }
+        return md5Hex;
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of the bytes read, or {@code null} if it isn't
+     * computed. The stream must not be read any further afterwards.
+     */
+    String getSha256() {
+        if (sha256Hex == null && sha256 != null) {
+            sha256Hex = DigestedStream.toHex(sha256.digest());
+        }
+        return sha256Hex;
+    }
+
+    /**
+     * Returns whether {@code etag} is a plain MD5 digest, as S3 returns for objects uploaded in a
+     * single request without SSE-KMS or SSE-C encryption, and can be compared with one.
+     */
+    static boolean isMd5ETag(String etag) {
+        return etag != null && unquote(etag).matches("[0-9a-fA-F]{32}");
+    }
+
+    /**
+     * Returns whether {@code etag} matches the hex encoded MD5 digest {@code md5}.
+     */
+    static boolean matchesETag(String md5, String etag) {
+        return isMd5ETag(etag) && unquote(etag).equalsIgnoreCase(md5);
+    }
+
+    /**
+     * Returns the hex encoded MD5 digest of a range of {@code buffer}.
+     */
+    static String md5(byte[] buffer, int offset, int length) throws IOException {
+        MessageDigest md = getDigest("MD5");
+        md.update(buffer, offset, length);
+        return DigestedStream.toHex(md.digest());
+    }
+
+    private static String unquote(String etag) {
+        etag = etag.trim();
+        if (etag.length() >= 2 && etag.startsWith("\"") && etag.endsWith("\"")) {
+            etag = etag.substring(1, etag.length() - 1);
+        }
+        return etag;
+    }
+
+    private static MessageDigest getDigest(String algorithm) throws IOException {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void update(byte[] buffer, int offset, int count) {
+        md5.update(buffer, offset, count);
+        if (sha256 != null) {
+            sha256.update(buffer, offset, count);
+        }
+    }
+}
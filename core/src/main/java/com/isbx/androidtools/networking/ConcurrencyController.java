@@ -0,0 +1,134 @@
+package com.isbx.androidtools.networking;
+
+import android.os.SystemClock;
+
+/**
+ * Tracks the outcome of uploads and adjusts a concurrency limit according to an
+ * {@link AdaptiveConcurrencyPolicy}. The results of uploads are grouped into windows of as many
+ * uploads as the current limit, and the combined throughput of each window is compared with the
+ * previous one to decide whether raising the limit paid off.
+ */
+class ConcurrencyController {
+
+    /**
+     * Receives changes of the limit. This is invoked on the upload thread whose result caused the
+     * change.
+     */
+    interface Callback {
+        void onLimitChanged(int previousLimit, int limit, long throughput, double errorRate);
+    }
+
+    private final AdaptiveConcurrencyPolicy policy;
+    private final Callback callback;
+
+    private int maxLimit;
+    private int limit;
+
+    private long windowStart;
+    private int windowResults;
+    private int windowErrors;
+    private long windowBytes;
+
+    private long lastThroughput = -1;
+    private boolean increased;
+    private boolean holding;
+    private boolean recovering;
+
+    ConcurrencyController(AdaptiveConcurrencyPolicy policy, int maxLimit, Callback callback) {
+        this.policy = policy;
+        this.callback = callback;
+        this.maxLimit = maxLimit;
+        reset();
+    }
+
+    synchronized int getLimit() {
+        return limit;
+    }
+
+    synchronized void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+        limit = clamp(limit);
+    }
+
+    /**
+     * Returns the limit to the policy's initial value and forgets all measurements, for example
+     * because the network changed.
+     */
+    synchronized void reset() {
+        limit = clamp(policy.getInitialConcurrentUploads());
+        lastThroughput = -1;
+        increased = false;
+        holding = false;
+        recovering = false;
+        startWindow();
+    }
+
+    /**
+     * Records the result of a single upload attempt.
+     *
+     * @param bytes The number of bytes sent
+     * @param congestion Whether the attempt failed in a way that indicates congestion
+     */
+    void onResult(long bytes, boolean congestion) {
+        int previousLimit;
+        int newLimit;
+        long throughput;
+        double errorRate;
+
+        synchronized (this) {
+            windowResults++;
+            windowBytes += bytes;
+            if (congestion) {
+                windowErrors++;
+            }
+
+            previousLimit = limit;
+            throughput = windowBytes * 1000 / Math.max(1, SystemClock.uptimeMillis() - windowStart);
+            errorRate = (double) windowErrors / windowResults;
+
+            if (congestion && !recovering) {
+                // uploads started before the decrease may fail as well, so they are ignored until
+                // a full window has passed
+                limit = clamp((int) (limit * policy.getDecreaseFactor()));
+                recovering = true;
+                increased = false;
+                holding = false;
+                lastThroughput = -1;
+                startWindow();
+            } else if (windowResults >= limit) {
+                if (increased && lastThroughput >= 0
+                    && throughput < lastThroughput * (1 + policy.getMinThroughputGain())) {
+                    // the extra upload didn't pay off, go back and stay there for a window
+                    limit = clamp(limit - 1);
+                    increased = false;
+                    holding = true;
+                } else if (holding || recovering) {
+                    holding = false;
+                    recovering = false;
+                } else {
+                    limit = clamp(limit + 1);
+                    increased = limit != previousLimit;
+                }
+                lastThroughput = throughput;
+                startWindow();
+            }
+            newLimit = limit;
+        }
+
+        if (newLimit != previousLimit) {
+            callback.onLimitChanged(previousLimit, newLimit, throughput, errorRate);
+        }
+    }
+
+    private void startWindow() {
+        windowStart = SystemClock.uptimeMillis();
+        windowResults = 0;
+        windowErrors = 0;
+        windowBytes = 0;
+    }
+
+    private int clamp(int value) {
+        int min = Math.min(policy.getMinConcurrentUploads(), maxLimit);
+        return Math.max(min, Math.min(maxLimit, value));
+    }
+}
@@ -0,0 +1,73 @@
+package com.isbx.androidtools.networking;
+
+/**
+ * Reports the type of network the device is currently connected to, and notifies listeners when
+ * it changes. An {@link UploadManager} with a ConnectivityMonitor applies its
+ * {@link NetworkPolicy} to the current network, and waits for connectivity to return instead of
+ * failing uploads while the device is offline.
+ *
+ * <p>
+ * {@link AndroidConnectivityMonitor} is the implementation backed by the system's
+ * {@link android.net.ConnectivityManager}. Other implementations can be used to simulate network
+ * changes.
+ * </p>
+ *
+ * @see UploadManager#setConnectivityMonitor(ConnectivityMonitor)
+ */
+public interface ConnectivityMonitor {
+
+    /**
+     * The type of network the device is connected to, as far as uploads are concerned.
+     */
+    enum NetworkType {
+        /**
+         * The device has no network connection.
+         */
+        NONE,
+        /**
+         * A slow metered network, such as a 2G or early 3G cellular connection.
+         */
+        CONSTRAINED,
+        /**
+         * A metered network, such as a cellular connection or a mobile hotspot.
+         */
+        METERED,
+        /**
+         * An unmetered network, such as Wi-Fi or ethernet.
+         */
+        UNMETERED
+    }
+
+    /**
+     * A listener that is notified when the device's network changes.
+     */
+    interface Listener {
+        /**
+         * This method is invoked whenever the network type may have changed.
+         *
+         * @param networkType The current {@link NetworkType}
+         */
+        void onNetworkChanged(NetworkType networkType);
+    }
+
+    /**
+     * Returns the type of network the device is currently connected to.
+     *
+     * @return The current {@link NetworkType}
+     */
+    NetworkType getNetworkType();
+
+    /**
+     * Registers a listener to be notified when the network changes.
+     *
+     * @param listener The {@link Listener} to register
+     */
+    void addListener(Listener listener);
+
+    /**
+     * Unregisters a listener registered with {@link #addListener(Listener)}.
+     *
+     * @param listener The {@link Listener} to unregister
+     */
+    void removeListener(Listener listener);
+}
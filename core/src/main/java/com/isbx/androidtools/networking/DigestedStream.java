@@ -0,0 +1,104 @@
+package com.isbx.androidtools.networking;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Reads up to a limited number of bytes of a stream into memory while computing their SHA-256
+ * digest. If the whole stream fits within the limit, its digest is available from
+ * {@link #getDigest()} and {@link #getInputStream()} replays it from memory. Otherwise
+ * {@link #getInputStream()} continues with the rest of the original stream, so the stream is only
+ * ever read once either way.
+ */
+class DigestedStream {
+    private static final String ALGORITHM = "SHA-256";
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final InputStream source;
+    private final byte[] buffer;
+    private final int length;
+    private final String digest;
+
+    private DigestedStream(InputStream source, byte[] buffer, int length, String digest) {
+        this.source = source;
+        this.buffer = buffer;
+        this.length = length;
+        this.digest = digest;
+    }
+
+    /**
+     * Reads up to {@code limit} bytes of {@code in}. {@code in} must be closed by the caller,
+     * after it is done with {@link #getInputStream()}.
+     */
+    static DigestedStream read(InputStream in, int limit) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        // read one byte past the limit to tell a stream of exactly limit bytes from a longer one
+        int capacity = (int) Math.min((long) limit + 1, Integer.MAX_VALUE);
+        byte[] buffer = new byte[Math.min(capacity, INITIAL_BUFFER_SIZE)];
+        int length = 0;
+        while (length < capacity) {
+            if (length == buffer.length) {
+                byte[] grown = new byte[(int) Math.min((long) buffer.length * 2, capacity)];
+                System.arraycopy(buffer, 0, grown, 0, length);
+                buffer = grown;
+            }
+
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read == -1) {
+                break;
+            }
+            md.update(buffer, length, read);
+            length += read;
+        }
+
+        if (length > limit) {
+            return new DigestedStream(in, buffer, length, null);
+        }
+
+        return new DigestedStream(null, buffer, length, toHex(md.digest()));
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of the stream, or {@code null} if it was longer than
+     * the limit.
+     */
+    String getDigest() {
+        return digest;
+    }
+
+    /**
+     * Returns the number of bytes read into memory, which is the length of the stream if
+     * {@link #getDigest()} isn't {@code null}.
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns a stream of the complete content of the original stream.
+     */
+    InputStream getInputStream() {
+        InputStream buffered = new ByteArrayInputStream(buffer, 0, length);
+        return source != null ? new SequenceInputStream(buffered, source) : buffered;
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
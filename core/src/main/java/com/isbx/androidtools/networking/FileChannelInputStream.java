@@ -0,0 +1,74 @@
+package com.isbx.androidtools.networking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An {@link InputStream} of an exact range of a {@link FileChannel}, such as the region of an
+ * {@link android.content.res.AssetFileDescriptor}. Reads are positional, so they don't depend on
+ * or change the position of the underlying file descriptor.
+ */
+class FileChannelInputStream extends InputStream {
+    private final FileChannel channel;
+    private final Closeable owner;
+    private final long end;
+    private long position;
+
+    /**
+     * Creates a new FileChannelInputStream.
+     *
+     * @param channel The {@link FileChannel} to read from
+     * @param offset The position of the first byte to read
+     * @param length The number of bytes to read
+     * @param owner The object that owns {@code channel}, which is closed when the stream is
+     *              closed
+     */
+    FileChannelInputStream(FileChannel channel, long offset, long length, Closeable owner) {
+        this.channel = channel;
+        this.owner = owner;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+
+        int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+        if (read > 0) {
+            position += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(end - position, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        owner.close();
+    }
+}
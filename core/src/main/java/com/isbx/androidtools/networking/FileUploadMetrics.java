@@ -0,0 +1,215 @@
+package com.isbx.androidtools.networking;
+
+/**
+ * Performance metrics of a single file uploaded through an {@link UploadManager}. All times are
+ * in milliseconds.
+ *
+ * @see UploadMetricsListener#onFileMetrics(FileUploadMetrics)
+ */
+public class FileUploadMetrics {
+    final int fileIndex;
+    final long credentialsTime;
+    final long queueTime;
+
+    boolean multipart;
+    boolean deduplicated;
+    long timeToFirstByte = -1;
+    long bytes;
+    long transferTime;
+    long duration;
+    int statusCode;
+    int retryCount;
+    boolean integrityVerified;
+    String md5;
+    String sha256;
+    String url;
+    Throwable error;
+
+    FileUploadMetrics(int fileIndex, long credentialsTime, long queueTime) {
+        this.fileIndex = fileIndex;
+        this.credentialsTime = credentialsTime;
+        this.queueTime = queueTime;
+    }
+
+    /**
+     * Returns the index of the file in its request.
+     *
+     * @return The index of the file
+     */
+    public int getFileIndex() {
+        return fileIndex;
+    }
+
+    /**
+     * Returns whether the file was uploaded successfully.
+     *
+     * @return {@code true} if the file was uploaded, {@code false} if it failed or was cancelled
+     */
+    public boolean isSuccessful() {
+        return url != null;
+    }
+
+    /**
+     * Returns the url the file was uploaded to.
+     *
+     * @return The S3 url of the file, or {@code null} if it wasn't uploaded
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the error the file failed with.
+     *
+     * @return The error that was reported to {@link UploadManager.UploadListener#onUploadFailed(Throwable, int)},
+     *         or {@code null} if the file didn't fail
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Returns whether the file was uploaded with the S3 multipart upload API.
+     *
+     * @return {@code true} if the file was uploaded in parts
+     */
+    public boolean isMultipart() {
+        return multipart;
+    }
+
+    /**
+     * Returns whether the file was skipped because its content was found in the
+     * {@link UploadIndex}.
+     *
+     * @return {@code true} if the url of an earlier upload was reused
+     */
+    public boolean isDeduplicated() {
+        return deduplicated;
+    }
+
+    /**
+     * Returns how long it took to retrieve the credentials for the file's request. Since
+     * credentials are retrieved once per request, this is the same for every file of a request.
+     *
+     * @return The credentials fetch time
+     */
+    public long getCredentialsTime() {
+        return credentialsTime;
+    }
+
+    /**
+     * Returns how long the file waited for an upload slot before it started uploading.
+     *
+     * @return The queue time
+     */
+    public long getQueueTime() {
+        return queueTime;
+    }
+
+    /**
+     * Returns how long it took from the start of the file's last attempt until its first byte was
+     * sent, which includes establishing the connection.
+     *
+     * @return The time to first byte, or {@code -1} if it wasn't measured, as for multipart and
+     *         deduplicated uploads
+     */
+    public long getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+
+    /**
+     * Returns the number of bytes sent in the file's last attempt.
+     *
+     * @return The number of bytes uploaded
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns how long the file's last attempt took, from its start until the response was
+     * received.
+     *
+     * @return The transfer time
+     */
+    public long getTransferTime() {
+        return transferTime;
+    }
+
+    /**
+     * Returns how long the file took to upload from the moment it left the queue, including all
+     * attempts and the delays between them.
+     *
+     * @return The total duration
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the effective throughput of the file's last attempt.
+     *
+     * @return The throughput in bytes per second, or {@code 0} if nothing was sent
+     */
+    public long getThroughput() {
+        return transferTime > 0 ? bytes * 1000 / transferTime : 0;
+    }
+
+    /**
+     * Returns the HTTP status code of the file's last response.
+     *
+     * @return The status code, or {@code 0} if no response was received or the file was uploaded
+     *         in parts
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns how many times the file was retried according to the {@link RetryPolicy}. For
+     * multipart uploads, this is the total number of part retries.
+     *
+     * @return The number of retries
+     */
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * Returns whether S3 confirmed receiving exactly the bytes that were read from the file, by
+     * returning an ETag that matches their MD5 digest.
+     *
+     * @return {@code true} if the upload was verified, {@code false} if integrity checking is
+     *         disabled or the ETag returned by S3 isn't a plain MD5 digest, as for objects
+     *         encrypted with SSE-KMS
+     *
+     * @see UploadManager#setIntegrityCheckEnabled(boolean)
+     */
+    public boolean isIntegrityVerified() {
+        return integrityVerified;
+    }
+
+    /**
+     * Returns the MD5 digest of the file's content, computed while it was uploaded.
+     *
+     * @return The hex encoded MD5 digest, or {@code null} if integrity checking is disabled or the
+     *         file wasn't uploaded
+     *
+     * @see UploadManager#setIntegrityCheckEnabled(boolean)
+     */
+    public String getMd5() {
+        return md5;
+    }
+
+    /**
+     * Returns the SHA-256 digest of the file's content, computed while it was uploaded.
+     *
+     * @return The hex encoded SHA-256 digest, or {@code null} if it isn't computed or the file
+     *         wasn't uploaded
+     *
+     * @see UploadManager#setSha256Enabled(boolean)
+     */
+    public String getSha256() {
+        return sha256;
+    }
+}
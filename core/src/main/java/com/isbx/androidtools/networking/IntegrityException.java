@@ -0,0 +1,24 @@
+package com.isbx.androidtools.networking;
+
+import java.io.IOException;
+
+/**
+ * Signals that S3 received different bytes than were uploaded, because the ETag it returned
+ * doesn't match the MD5 digest of the uploaded content. This is reported to
+ * {@link UploadManager.UploadListener#onUploadFailed(Throwable, int)} for files that are still
+ * corrupted after their last attempt.
+ *
+ * @see UploadManager#setIntegrityCheckEnabled(boolean)
+ */
+public class IntegrityException extends IOException {
+
+    /**
+     * Creates a new IntegrityException.
+     *
+     * @param etag The ETag returned by S3
+     * @param md5 The hex encoded MD5 digest of the uploaded content
+     */
+    public IntegrityException(String etag, String md5) {
+        super("ETag " + etag + " doesn't match the uploaded MD5 digest " + md5);
+    }
+}
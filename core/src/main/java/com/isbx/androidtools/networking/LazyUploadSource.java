@@ -0,0 +1,24 @@
+package com.isbx.androidtools.networking;
+
+import android.content.Context;
+
+/**
+ * An {@link UploadSource} whose data is produced in the background while its upload request is
+ * already running. Its length isn't requested when the request starts, so each file of the
+ * request can start uploading as soon as its own data is ready, and its data is released once it
+ * was uploaded.
+ */
+interface LazyUploadSource extends UploadSource {
+    /**
+     * Blocks until the data of this source is ready and returns its size in bytes, or {@code -1}
+     * if it could not be produced.
+     */
+    @Override
+    long getLength(Context context);
+
+    /**
+     * Releases the data of this source once its upload finished, whether or not it succeeded.
+     * The source is not opened again afterwards.
+     */
+    void release();
+}
@@ -0,0 +1,112 @@
+package com.isbx.androidtools.networking;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Map;
+import java.util.UUID;
+
+import cz.msebera.android.httpclient.entity.AbstractHttpEntity;
+
+/**
+ * A {@code multipart/form-data} request body consisting of text fields followed by a single file,
+ * as expected by S3 POST uploads. Unlike the multipart entity built by
+ * {@link com.loopj.android.http.RequestParams}, which copies stream parts into memory, the file is
+ * streamed straight from its source while the request is written, and the body has an exact
+ * Content-Length when the file's length is known.
+ */
+class MultipartFormEntity extends AbstractHttpEntity {
+    private static final String CRLF = "\r\n";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String boundary = "----" + UUID.randomUUID().toString().replace("-", "");
+    private final byte[] head;
+    private final byte[] tail;
+    private final InputStream file;
+    private final long fileLength;
+
+    /**
+     * Creates a new MultipartFormEntity.
+     *
+     * @param fields The text fields to send before the file, in order
+     * @param fileField The name of the file field
+     * @param fileName The file name to send with the file
+     * @param fileContentType The content type of the file
+     * @param file The content of the file
+     * @param fileLength The length of the file in bytes, or {@code -1} if unknown, in which case
+     *                   the request is sent with chunked encoding
+     */
+    MultipartFormEntity(Map<String, String> fields, String fileField, String fileName, String fileContentType,
+                        InputStream file, long fileLength) throws IOException {
+        this.file = file;
+        this.fileLength = fileLength;
+
+        StringBuilder head = new StringBuilder();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            head.append("--").append(boundary).append(CRLF)
+                .append("Content-Disposition: form-data; name=\"").append(field.getKey()).append('"').append(CRLF)
+                .append(CRLF)
+                .append(field.getValue()).append(CRLF);
+        }
+        head.append("--").append(boundary).append(CRLF)
+            .append("Content-Disposition: form-data; name=\"").append(fileField)
+            .append("\"; filename=\"").append(fileName).append('"').append(CRLF)
+            .append("Content-Type: ").append(fileContentType).append(CRLF)
+            .append(CRLF);
+        this.head = head.toString().getBytes("UTF-8");
+        this.tail = (CRLF + "--" + boundary + "--" + CRLF).getBytes("UTF-8");
+
+        setContentType("multipart/form-data; boundary=" + boundary);
+    }
+
+    /**
+     * Returns the value of the Content-Type header to send the entity with.
+     */
+    String getMultipartContentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    @Override
+    public long getContentLength() {
+        return fileLength >= 0 ? head.length + fileLength + tail.length : -1;
+    }
+
+    @Override
+    public InputStream getContent() {
+        return new SequenceInputStream(new ByteArrayInputStream(head),
+            new SequenceInputStream(file, new ByteArrayInputStream(tail)));
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(head);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long written = 0;
+        int read;
+        while ((read = file.read(buffer)) != -1) {
+            written += read;
+            if (fileLength >= 0 && written > fileLength) {
+                throw new IOException("Source is longer than its length of " + fileLength + " bytes");
+            }
+            out.write(buffer, 0, read);
+        }
+        if (fileLength >= 0 && written < fileLength) {
+            // the Content-Length has already been sent, so a short body can't be completed
+            throw new IOException("Source ended after " + written + " of " + fileLength + " bytes");
+        }
+        out.write(tail);
+        out.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+}
@@ -0,0 +1,348 @@
+package com.isbx.androidtools.networking;
+
+import com.isbx.androidtools.networking.s3.S3MultipartCredentials;
+import com.loopj.android.http.SyncHttpClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cz.msebera.android.httpclient.entity.ByteArrayEntity;
+import cz.msebera.android.httpclient.entity.StringEntity;
+
+/**
+ * Uploads a single file to S3 using the multipart upload API. The source stream is read in
+ * sequential parts, and each part is uploaded to its pre-signed url on a shared
+ * {@link ExecutorService} while the next part is being read.
+ *
+ * <p>
+ * The number of parts in flight is bounded by a fixed pool of part buffers, so the memory used by
+ * an upload never exceeds {@code maxPartsInFlight * partSize}. Each part is retried individually
+ * according to a {@link RetryPolicy} if its request fails. If a part still fails after its last
+ * attempt, the upload is aborted.
+ * </p>
+ *
+ * <p>
+ * Since every part is held in memory, its MD5 digest can be computed without reading the source
+ * again. With {@link #setVerifyParts(boolean)}, the ETag S3 returns for each part is compared with
+ * it, and a part that doesn't match is uploaded again.
+ * </p>
+ */
+class MultipartUpload {
+    private static final String S3_URL_FORMAT = "https://%s.s3.amazonaws.com";
+    private static final String CONTENT_TYPE_OCTET_STREAM = "application/octet-stream";
+    private static final String CONTENT_TYPE_XML = "application/xml";
+
+    /**
+     * S3 requires every part except the last to be at least 5 MB.
+     */
+    static final long MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    /**
+     * S3 does not allow more than 10,000 parts in a single multipart upload.
+     */
+    static final int MAX_PART_COUNT = 10000;
+
+    private final SyncHttpClient client;
+    private final ExecutorService executor;
+    private final int partSize;
+    private final BlockingQueue<byte[]> buffers;
+    private final RetryPolicy retryPolicy;
+
+    private UploadProgress progress;
+    private int fileIndex;
+    private UploadHandle handle = new UploadHandle();
+    private NetworkGate network;
+    private boolean verifyParts;
+
+    private volatile Throwable error;
+    private final AtomicInteger retryCount = new AtomicInteger();
+    private volatile boolean unverifiedParts;
+
+    /**
+     * Creates a new MultipartUpload.
+     *
+     * @param client The {@link SyncHttpClient} to make the part requests with
+     * @param executor The {@link ExecutorService} to upload the parts on
+     * @param partSize The size of each part in bytes
+     * @param maxPartsInFlight The maximum number of parts to buffer and upload at once
+     * @param retryPolicy The {@link RetryPolicy} to retry failed parts with
+     */
+    MultipartUpload(SyncHttpClient client, ExecutorService executor, int partSize, int maxPartsInFlight,
+                    RetryPolicy retryPolicy) {
+        this.client = client;
+        this.retryPolicy = retryPolicy;
+        this.executor = executor;
+        this.partSize = partSize;
+        this.buffers = new ArrayBlockingQueue<>(maxPartsInFlight);
+        for (int i = 0; i < maxPartsInFlight; i++) {
+            buffers.add(new byte[partSize]);
+        }
+    }
+
+    /**
+     * Sets the {@link UploadProgress} to record uploaded bytes in. Bytes are recorded as each part
+     * finishes uploading.
+     *
+     * @param progress The {@link UploadProgress} of the request this upload belongs to
+     * @param fileIndex The index of the uploaded file in the request
+     */
+    void setProgress(UploadProgress progress, int fileIndex) {
+        this.progress = progress;
+        this.fileIndex = fileIndex;
+    }
+
+    /**
+     * Sets the {@link UploadHandle} of the request this upload belongs to. Part requests are
+     * aborted when the request is paused or cancelled, and parts interrupted by a pause are
+     * uploaded again once it is resumed.
+     *
+     * @param handle The {@link UploadHandle} of the request
+     */
+    void setHandle(UploadHandle handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Sets the {@link NetworkGate} of the request this upload belongs to. Parts that fail while
+     * the device is offline are uploaded again once it reconnects, without counting as an attempt.
+     *
+     * @param network The {@link NetworkGate} of the request, or {@code null}
+     */
+    void setNetworkGate(NetworkGate network) {
+        this.network = network;
+    }
+
+    /**
+     * Sets whether to compare the ETag of each uploaded part with the MD5 digest of its content.
+     *
+     * @param verifyParts {@code true} to verify parts
+     */
+    void setVerifyParts(boolean verifyParts) {
+        this.verifyParts = verifyParts;
+    }
+
+    /**
+     * Returns whether every part of this upload was verified against its ETag. This is
+     * {@code false} if part verification is disabled, or S3 returned an ETag that isn't a plain
+     * MD5 digest.
+     */
+    boolean isVerified() {
+        return verifyParts && !unverifiedParts;
+    }
+
+    /**
+     * Returns the total number of times a part of this upload was retried.
+     */
+    int getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Returns the size of the parts a file of the given length should be split into, starting
+     * with {@code preferredPartSize} and increasing it if the file would otherwise need more than
+     * {@link #MAX_PART_COUNT} parts.
+     */
+    static long getPartSize(long length, long preferredPartSize) {
+        long minPartSize = (length + MAX_PART_COUNT - 1) / MAX_PART_COUNT;
+        return Math.max(preferredPartSize, minPartSize);
+    }
+
+    /**
+     * Returns the number of parts a file of the given length is split into.
+     */
+    static int getPartCount(long length, long partSize) {
+        return (int) Math.max(1, (length + partSize - 1) / partSize);
+    }
+
+    /**
+     * Uploads the contents of {@code in} in parts, blocking until the upload has been completed.
+     *
+     * @param in The {@link InputStream} to upload
+     * @param credentials The {@link S3MultipartCredentials} of the initiated multipart upload
+     * @return The url of the uploaded file
+     * @throws IOException If the source could not be read, or the upload failed
+     */
+    String upload(InputStream in, S3MultipartCredentials credentials) throws IOException {
+        String[] partUrls = credentials.getPartUrls();
+        final String[] etags = new String[partUrls.length];
+        List<Future<?>> parts = new ArrayList<>(partUrls.length);
+
+        try {
+            for (int i = 0; i < partUrls.length && error == null; i++) {
+                final byte[] buffer = takeBuffer();
+                final int length = readPart(in, buffer);
+                if (length == 0) {
+                    buffers.add(buffer);
+                    if (i == 0) {
+                        // S3 still expects a single (empty) part for an empty file
+                        etags[i] = uploadPart(partUrls[i], buffer, 0);
+                        continue;
+                    }
+                    throw new IOException("Source ended after " + i + " of " + partUrls.length + " parts");
+                }
+
+                final String partUrl = partUrls[i];
+                final int partIndex = i;
+                parts.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            etags[partIndex] = uploadPart(partUrl, buffer, length);
+                        } catch (Throwable e) {
+                            error = e;
+                        } finally {
+                            buffers.add(buffer);
+                        }
+                    }
+                }));
+            }
+
+            awaitParts(parts);
+            if (error != null) {
+                throw error instanceof IOException ? (IOException) error : new IOException(error);
+            }
+
+            complete(credentials, etags);
+        } catch (IOException e) {
+            for (Future<?> part : parts) {
+                part.cancel(false);
+            }
+            abort(credentials);
+            throw e;
+        }
+
+        return String.format(S3_URL_FORMAT, credentials.getBucket()) + "/" + credentials.getKey();
+    }
+
+    private byte[] takeBuffer() throws IOException {
+        try {
+            return buffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Multipart upload interrupted");
+        }
+    }
+
+    private int readPart(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < partSize) {
+            int read = in.read(buffer, length, partSize - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    private void awaitParts(List<Future<?>> parts) throws IOException {
+        for (Future<?> part : parts) {
+            try {
+                part.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Multipart upload interrupted");
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    private String uploadPart(String partUrl, byte[] buffer, int length) throws IOException {
+        String md5 = verifyParts ? ChecksumInputStream.md5(buffer, 0, length) : null;
+        int attempt = 1;
+        while (true) {
+            if (!handle.awaitResumed()) {
+                throw new IOException("Multipart upload cancelled");
+            }
+            int pauseCount = handle.getPauseCount();
+
+            SyncResponseHandler handler = new SyncResponseHandler(handle);
+            client.put(null, partUrl, new ByteArrayEntity(buffer, 0, length), CONTENT_TYPE_OCTET_STREAM, handler);
+
+            String etag = handler.getHeader("ETag");
+            boolean corrupted = md5 != null && ChecksumInputStream.isMd5ETag(etag)
+                && !ChecksumInputStream.matchesETag(md5, etag);
+            if (handler.isSuccessful() && etag != null && !corrupted) {
+                if (md5 != null && !ChecksumInputStream.isMd5ETag(etag)) {
+                    unverifiedParts = true;
+                }
+                if (progress != null) {
+                    progress.addBytes(fileIndex, length);
+                }
+                return etag;
+            }
+
+            if (handle.getPauseCount() != pauseCount) {
+                // aborted by a pause, upload the part again once resumed
+                continue;
+            }
+
+            if (network != null && network.getNetworkType() == ConnectivityMonitor.NetworkType.NONE) {
+                // lost connectivity, upload the part again once it returns
+                if (!network.awaitConnected(handle)) {
+                    throw new IOException("Multipart upload cancelled");
+                }
+                continue;
+            }
+
+            // a response without a (matching) ETag is unexpected, but is treated like a transient
+            // failure
+            Throwable lastError = handler.getError();
+            if (handler.isSuccessful()) {
+                lastError = corrupted
+                    ? new IntegrityException(etag, md5)
+                    : new IOException("Missing ETag in part upload response");
+            }
+            boolean retryable = handler.isSuccessful()
+                || retryPolicy.isRetryable(handler.getStatusCode(), lastError);
+            if (error != null || attempt >= retryPolicy.getMaxAttempts() || !retryable) {
+                throw lastError instanceof IOException ? (IOException) lastError : new IOException(lastError);
+            }
+
+            retryCount.incrementAndGet();
+            try {
+                Thread.sleep(retryPolicy.getDelay(++attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Multipart upload interrupted");
+            }
+        }
+    }
+
+    private void complete(S3MultipartCredentials credentials, String[] etags) throws IOException {
+        StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.length; i++) {
+            xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber>")
+                .append("<ETag>").append(etags[i]).append("</ETag></Part>");
+        }
+        xml.append("</CompleteMultipartUpload>");
+
+        SyncResponseHandler handler = new SyncResponseHandler();
+        client.post(null, credentials.getCompleteUrl(), new StringEntity(xml.toString(), "UTF-8"), CONTENT_TYPE_XML, handler);
+        if (!handler.isSuccessful()) {
+            Throwable error = handler.getError();
+            throw error instanceof IOException ? (IOException) error : new IOException(error);
+        }
+
+        // S3 may report a failed completion with a 200 status and an error document
+        byte[] body = handler.getResponseBody();
+        if (body != null && new String(body, "UTF-8").contains("<Error>")) {
+            throw new IOException("Failed completing multipart upload: " + new String(body, "UTF-8"));
+        }
+    }
+
+    private void abort(S3MultipartCredentials credentials) {
+        if (credentials.getAbortUrl() != null) {
+            client.delete(null, credentials.getAbortUrl(), new SyncResponseHandler());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.isbx.androidtools.networking;
+
+import com.isbx.androidtools.networking.ConnectivityMonitor.NetworkType;
+
+/**
+ * Applies a {@link NetworkPolicy} to the network reported by a {@link ConnectivityMonitor}, and
+ * lets upload threads wait for the network to change. The owning {@link UploadManager} calls
+ * {@link #notifyChanged()} whenever the monitor reports a change.
+ */
+class NetworkGate {
+    // waiting threads wake up this often to notice cancelled requests and missed notifications
+    private static final long POLL_INTERVAL_MS = 1000;
+
+    private final ConnectivityMonitor monitor;
+    private volatile NetworkPolicy policy;
+    private int generation;
+
+    NetworkGate(ConnectivityMonitor monitor, NetworkPolicy policy) {
+        this.monitor = monitor;
+        this.policy = policy;
+    }
+
+    void setPolicy(NetworkPolicy policy) {
+        this.policy = policy;
+        notifyChanged();
+    }
+
+    NetworkType getNetworkType() {
+        return monitor.getNetworkType();
+    }
+
+    /**
+     * Returns whether a file of the given length can be uploaded on the current network.
+     */
+    boolean allows(long length) {
+        return policy.allows(monitor.getNetworkType(), length);
+    }
+
+    /**
+     * Returns a counter of network changes, to pass to {@link #awaitChange(int, UploadHandle)}.
+     * It must be read before checking the network, so that a change in between isn't missed.
+     */
+    synchronized int getGeneration() {
+        return generation;
+    }
+
+    synchronized void notifyChanged() {
+        generation++;
+        notifyAll();
+    }
+
+    /**
+     * Blocks until the network changes after {@code generation} was read.
+     *
+     * @return {@code false} if the request of {@code handle} was cancelled while waiting
+     */
+    synchronized boolean awaitChange(int generation, UploadHandle handle) {
+        while (this.generation == generation) {
+            if (!await(handle)) {
+                return false;
+            }
+        }
+        return !handle.isCancelled();
+    }
+
+    /**
+     * Blocks until the device is connected to a network.
+     *
+     * @return {@code false} if the request of {@code handle} was cancelled while waiting
+     */
+    synchronized boolean awaitConnected(UploadHandle handle) {
+        while (monitor.getNetworkType() == NetworkType.NONE) {
+            if (!await(handle)) {
+                return false;
+            }
+        }
+        return !handle.isCancelled();
+    }
+
+    private boolean await(UploadHandle handle) {
+        if (handle.isCancelled()) {
+            return false;
+        }
+        try {
+            wait(POLL_INTERVAL_MS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.isbx.androidtools.networking;
+
+import com.isbx.androidtools.networking.ConnectivityMonitor.NetworkType;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A configuration class for how an {@link UploadManager} with a {@link ConnectivityMonitor}
+ * should adapt to the current network. The policy can:
+ *
+ * <ul>
+ * <li>Defer large files until the device is on an unmetered network, so bulk uploads don't use
+ * cellular data or compete with interactive traffic</li>
+ * <li>Limit the number of concurrent uploads per {@link NetworkType}</li>
+ * <li>Override the connect and response timeouts per {@link NetworkType}, so uploads on slow links
+ * don't time out</li>
+ * </ul>
+ *
+ * <p>
+ * By default, no files are deferred, and {@link NetworkType#CONSTRAINED} networks upload one file
+ * at a time with 60 second timeouts. Other network types use the configuration of the
+ * UploadManager.
+ * </p>
+ *
+ * @see UploadManager#setNetworkPolicy(NetworkPolicy)
+ */
+public class NetworkPolicy {
+
+    private static final int DEFAULT_CONSTRAINED_MAX_CONCURRENT_UPLOADS = 1;
+    private static final int DEFAULT_CONSTRAINED_TIMEOUT_MS = 60000;
+
+    private long unmeteredOnlyThreshold = -1;
+    private final Map<NetworkType, Integer> maxConcurrentUploads = new EnumMap<>(NetworkType.class);
+    private final Map<NetworkType, Integer> timeouts = new EnumMap<>(NetworkType.class);
+
+    /**
+     * Creates a new NetworkPolicy with the default configuration.
+     */
+    public NetworkPolicy() {
+        maxConcurrentUploads.put(NetworkType.CONSTRAINED, DEFAULT_CONSTRAINED_MAX_CONCURRENT_UPLOADS);
+        timeouts.put(NetworkType.CONSTRAINED, DEFAULT_CONSTRAINED_TIMEOUT_MS);
+    }
+
+    /**
+     * Returns the minimum size in bytes of files that are only uploaded on unmetered networks.
+     *
+     * @return The unmetered-only threshold in bytes, or a negative value if files are never
+     *         deferred
+     *
+     * @see NetworkPolicy#setUnmeteredOnlyThreshold(long)
+     */
+    public long getUnmeteredOnlyThreshold() {
+        return unmeteredOnlyThreshold;
+    }
+
+    /**
+     * Sets the minimum size in bytes of files that should only be uploaded on unmetered networks.
+     * Files at or above this size wait until the device connects to an unmetered network, while
+     * the other files of their request upload as usual. A value of {@code 0} defers all files
+     * whose size is known. Files that are already uploading when the network changes are not
+     * interrupted.
+     *
+     * @param unmeteredOnlyThreshold The unmetered-only threshold in bytes, or a negative value to
+     *                               never defer files
+     * @return This NetworkPolicy object to allow for method chaining
+     *
+     * @see NetworkPolicy#getUnmeteredOnlyThreshold()
+     */
+    public NetworkPolicy setUnmeteredOnlyThreshold(long unmeteredOnlyThreshold) {
+        this.unmeteredOnlyThreshold = unmeteredOnlyThreshold;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of concurrent uploads on the given type of network.
+     *
+     * @param networkType The {@link NetworkType}
+     * @return The maximum number of concurrent uploads, or {@code 0} if the UploadManager's
+     *         {@link UploadManager#getMaxConcurrentUploads()} applies
+     *
+     * @see NetworkPolicy#setMaxConcurrentUploads(NetworkType, int)
+     */
+    public int getMaxConcurrentUploads(NetworkType networkType) {
+        Integer value = maxConcurrentUploads.get(networkType);
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Limits the number of concurrent uploads on the given type of network. The limit never
+     * raises the UploadManager's own {@link UploadManager#getMaxConcurrentUploads()}.
+     *
+     * @param networkType The {@link NetworkType}
+     * @param maxConcurrentUploads The maximum number of concurrent uploads, or {@code 0} to use
+     *                             the UploadManager's limit
+     * @return This NetworkPolicy object to allow for method chaining
+     *
+     * @see NetworkPolicy#getMaxConcurrentUploads(NetworkType)
+     */
+    public NetworkPolicy setMaxConcurrentUploads(NetworkType networkType, int maxConcurrentUploads) {
+        if (maxConcurrentUploads < 0) {
+            throw new IllegalArgumentException("maxConcurrentUploads cannot be negative");
+        }
+        this.maxConcurrentUploads.put(networkType, maxConcurrentUploads);
+        return this;
+    }
+
+    /**
+     * Returns the connect and response timeout in milliseconds used on the given type of network.
+     *
+     * @param networkType The {@link NetworkType}
+     * @return The timeout in milliseconds, or {@code 0} if the UploadManager's timeouts apply
+     *
+     * @see NetworkPolicy#setTimeout(NetworkType, int)
+     */
+    public int getTimeout(NetworkType networkType) {
+        Integer value = timeouts.get(networkType);
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Overrides the connect and response timeouts of the UploadManager on the given type of
+     * network.
+     *
+     * @param networkType The {@link NetworkType}
+     * @param timeout The timeout in milliseconds, or {@code 0} to use the UploadManager's
+     *                timeouts
+     * @return This NetworkPolicy object to allow for method chaining
+     *
+     * @see NetworkPolicy#getTimeout(NetworkType)
+     */
+    public NetworkPolicy setTimeout(NetworkType networkType, int timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout cannot be negative");
+        }
+        timeouts.put(networkType, timeout);
+        return this;
+    }
+
+    /**
+     * Returns whether a file of the given length can be uploaded on the given type of network.
+     */
+    boolean allows(NetworkType networkType, long length) {
+        if (networkType == NetworkType.NONE) {
+            return false;
+        }
+        return networkType == NetworkType.UNMETERED || unmeteredOnlyThreshold < 0 || length < unmeteredOnlyThreshold;
+    }
+}
@@ -0,0 +1,80 @@
+package com.isbx.androidtools.networking;
+
+import android.os.SystemClock;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link InputStream} that records the number of bytes read from it in an
+ * {@link UploadProgress}. Since request bodies are streamed to the socket as they are read, this
+ * closely follows the number of bytes sent.
+ */
+class ProgressInputStream extends FilterInputStream {
+    private final UploadProgress progress;
+    private final int fileIndex;
+    private long bytesRead;
+    private long firstReadTime = -1;
+
+    ProgressInputStream(InputStream in, UploadProgress progress, int fileIndex) {
+        super(in);
+        this.progress = progress;
+        this.fileIndex = fileIndex;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            onRead(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        int read = super.read(buffer, offset, count);
+        if (read > 0) {
+            onRead(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        long skipped = super.skip(count);
+        if (skipped > 0) {
+            onRead(skipped);
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Returns the number of bytes read from this stream.
+     */
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns the {@link SystemClock#uptimeMillis()} of the first read from this stream, or
+     * {@code -1} if it hasn't been read.
+     */
+    long getFirstReadTime() {
+        return firstReadTime;
+    }
+
+    private void onRead(long count) {
+        if (firstReadTime < 0) {
+            firstReadTime = SystemClock.uptimeMillis();
+        }
+        bytesRead += count;
+        progress.addBytes(fileIndex, count);
+    }
+}
@@ -0,0 +1,137 @@
+package com.isbx.androidtools.networking;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.isbx.androidtools.media.ImageResizeConfig;
+import com.isbx.androidtools.media.ImageResizer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link UploadSource} that uploads a scaled copy of an image without writing it to a file.
+ *
+ * <p>
+ * The sources created for the sizes of one image by
+ * {@link #create(ImageResizer, Uri, ImageResizeConfig.Dimension...)} share a single resize
+ * operation, which starts the first time the length of any of them is requested. The image is
+ * decoded once, and every copy is scaled and encoded into memory in the background with
+ * {@link ImageResizer#encodeImages(Uri, ImageResizeConfig.Dimension[], ImageResizer.EncodeCallback)}.
+ * Each source waits only for its own copy, so a copy starts uploading with an exact
+ * Content-Length while the others are still being encoded. Retried or resumed uploads reuse the
+ * encoded bytes instead of encoding the image again, and the bytes are released once the copy's
+ * upload finished.
+ * </p>
+ */
+class ResizedImageSource implements LazyUploadSource {
+    private final EncodedImages images;
+    private final int index;
+
+    private ResizedImageSource(EncodedImages images, int index) {
+        this.images = images;
+        this.index = index;
+    }
+
+    /**
+     * Creates a source for each of the given dimensions of an image, all sharing a single resize
+     * operation.
+     *
+     * @param resizer The {@link ImageResizer} to scale the image with
+     * @param imageUri The {@link Uri} of the image to be resized
+     * @param dimensions The dimensions to scale the image to
+     * @return A source for each of {@code dimensions}, in the same order
+     */
+    static ResizedImageSource[] create(ImageResizer resizer, Uri imageUri, ImageResizeConfig.Dimension... dimensions) {
+        EncodedImages images = new EncodedImages(resizer, imageUri, dimensions);
+        ResizedImageSource[] sources = new ResizedImageSource[dimensions.length];
+        for (int i = 0; i < dimensions.length; i++) {
+            sources[i] = new ResizedImageSource(images, i);
+        }
+        return sources;
+    }
+
+    @Override
+    public Uri getUri() {
+        return images.imageUri;
+    }
+
+    @Override
+    public long getLength(Context context) {
+        byte[] data = images.get(index);
+        return data != null ? data.length : -1;
+    }
+
+    @Override
+    public String getExtension(Context context) {
+        return ImageResizer.getExtension(images.resizer.getOutputFormat(images.imageUri, images.dimensions[index]));
+    }
+
+    @Override
+    public InputStream open(Context context) throws IOException {
+        byte[] data = images.get(index);
+        if (data == null) {
+            throw new IOException("Failed resizing image " + images.imageUri);
+        }
+        return new ByteArrayInputStream(data);
+    }
+
+    @Override
+    public void release() {
+        images.release(index);
+    }
+
+    /**
+     * The encoded copies of an image, which start being created when the first source needs
+     * them, and are each available as soon as they are encoded.
+     */
+    private static class EncodedImages implements ImageResizer.EncodeCallback {
+        private final ImageResizer resizer;
+        private final Uri imageUri;
+        private final ImageResizeConfig.Dimension[] dimensions;
+        private final byte[][] encoded;
+        private final boolean[] finished;
+        private boolean started;
+
+        EncodedImages(ImageResizer resizer, Uri imageUri, ImageResizeConfig.Dimension[] dimensions) {
+            this.resizer = resizer;
+            this.imageUri = imageUri;
+            this.dimensions = dimensions;
+            this.encoded = new byte[dimensions.length][];
+            this.finished = new boolean[dimensions.length];
+        }
+
+        /**
+         * Blocks until the copy at {@code index} is encoded, returning {@code null} if it failed,
+         * was released, or the thread was interrupted while waiting.
+         */
+        synchronized byte[] get(int index) {
+            if (!started) {
+                started = true;
+                resizer.encodeImages(imageUri, dimensions, this);
+            }
+
+            while (!finished[index]) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return encoded[index];
+        }
+
+        synchronized void release(int index) {
+            encoded[index] = null;
+        }
+
+        @Override
+        public synchronized void onImageEncoded(int index, byte[] data) {
+            encoded[index] = data;
+            finished[index] = true;
+            notifyAll();
+        }
+    }
+}
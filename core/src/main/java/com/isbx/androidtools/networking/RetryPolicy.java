@@ -0,0 +1,193 @@
+package com.isbx.androidtools.networking;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A configuration class for how an {@link UploadManager} should retry failed uploads. The default
+ * policy makes up to three attempts per file, waiting an exponentially increasing, randomized
+ * delay between attempts, and considers the following failures retryable:
+ *
+ * <ul>
+ * <li>Requests that failed without a response, due to an {@link IOException} such as a timeout or
+ * a connection reset</li>
+ * <li>Responses with a 408, 429, 500, 502, 503 or 504 status code, which S3 uses for throttling and
+ * transient internal errors</li>
+ * </ul>
+ *
+ * <p>
+ * The delay before attempt {@code n + 1} is chosen at random between half and all of
+ * {@code min(maxDelay, baseDelay * 2^(n - 1))}, so that clients throttled at the same time don't
+ * retry in lockstep.
+ * </p>
+ *
+ * @see UploadManager#setRetryPolicy(RetryPolicy)
+ */
+public class RetryPolicy {
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_BASE_DELAY_MS = 500;
+    private static final long DEFAULT_MAX_DELAY_MS = 10000;
+    private static final int[] DEFAULT_RETRYABLE_STATUS_CODES = {408, 429, 500, 502, 503, 504};
+
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long baseDelay = DEFAULT_BASE_DELAY_MS;
+    private long maxDelay = DEFAULT_MAX_DELAY_MS;
+    private final Set<Integer> retryableStatusCodes = new HashSet<>();
+    private boolean retryOnIOException = true;
+
+    private final Random random = new Random();
+
+    /**
+     * Creates a new RetryPolicy with the default configuration.
+     */
+    public RetryPolicy() {
+        for (int statusCode : DEFAULT_RETRYABLE_STATUS_CODES) {
+            retryableStatusCodes.add(statusCode);
+        }
+    }
+
+    /**
+     * Returns the maximum number of times a single file will be attempted, including the first
+     * attempt.
+     *
+     * @return The maximum number of attempts
+     *
+     * @see RetryPolicy#setMaxAttempts(int)
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Sets the maximum number of times a single file will be attempted, including the first
+     * attempt. A value of {@code 1} disables retries.
+     *
+     * @param maxAttempts The maximum number of attempts, must be greater than zero
+     * @return This RetryPolicy object to allow for method chaining
+     *
+     * @see RetryPolicy#getMaxAttempts()
+     */
+    public RetryPolicy setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be greater than zero");
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Returns the delay in milliseconds before the first retry, before jitter is applied.
+     *
+     * @return The base delay in milliseconds
+     *
+     * @see RetryPolicy#setBaseDelay(long)
+     */
+    public long getBaseDelay() {
+        return baseDelay;
+    }
+
+    /**
+     * Sets the delay in milliseconds before the first retry, before jitter is applied. The delay
+     * doubles for every following retry.
+     *
+     * @param baseDelay The base delay in milliseconds
+     * @return This RetryPolicy object to allow for method chaining
+     *
+     * @see RetryPolicy#getBaseDelay()
+     */
+    public RetryPolicy setBaseDelay(long baseDelay) {
+        this.baseDelay = baseDelay;
+        return this;
+    }
+
+    /**
+     * Returns the upper bound in milliseconds of the delay between two attempts.
+     *
+     * @return The maximum delay in milliseconds
+     *
+     * @see RetryPolicy#setMaxDelay(long)
+     */
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * Sets the upper bound in milliseconds of the delay between two attempts.
+     *
+     * @param maxDelay The maximum delay in milliseconds
+     * @return This RetryPolicy object to allow for method chaining
+     *
+     * @see RetryPolicy#getMaxDelay()
+     */
+    public RetryPolicy setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+        return this;
+    }
+
+    /**
+     * Specifies the HTTP status codes of responses that should be retried, replacing the default
+     * set.
+     *
+     * @param statusCodes The retryable HTTP status codes
+     * @return This RetryPolicy object to allow for method chaining
+     */
+    public RetryPolicy setRetryableStatusCodes(int... statusCodes) {
+        retryableStatusCodes.clear();
+        for (int statusCode : statusCodes) {
+            retryableStatusCodes.add(statusCode);
+        }
+        return this;
+    }
+
+    /**
+     * Specifies whether requests that failed with an {@link IOException} before a response was
+     * received should be retried. This is enabled by default.
+     *
+     * @param retryOnIOException {@code true} if these failures should be retried, {@code false}
+     *                           otherwise
+     * @return This RetryPolicy object to allow for method chaining
+     */
+    public RetryPolicy setRetryOnIOException(boolean retryOnIOException) {
+        this.retryOnIOException = retryOnIOException;
+        return this;
+    }
+
+    /**
+     * Returns whether a failed upload should be retried. Subclasses may override this method to
+     * customize which failures are considered transient.
+     *
+     * @param statusCode The HTTP status code of the response, or {@code 0} if no response was
+     *                   received
+     * @param error The {@link Throwable} describing the failure
+     * @return {@code true} if the upload should be retried, {@code false} otherwise
+     */
+    public boolean isRetryable(int statusCode, Throwable error) {
+        if (statusCode == 0) {
+            return retryOnIOException && error instanceof IOException;
+        }
+        return retryableStatusCodes.contains(statusCode);
+    }
+
+    /**
+     * Returns the time in milliseconds to wait before making the given attempt.
+     *
+     * @param attempt The number of the attempt about to be made, starting at {@code 2} for the
+     *                first retry
+     * @return The delay in milliseconds
+     */
+    public long getDelay(int attempt) {
+        long delay = baseDelay;
+        for (int i = 2; i < attempt && delay < maxDelay; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, maxDelay);
+
+        long halfDelay = delay / 2;
+        synchronized (random) {
+            return halfDelay + (long) (random.nextDouble() * (delay - halfDelay));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.isbx.androidtools.networking;
+
+import com.loopj.android.http.AsyncHttpResponseHandler;
+
+import cz.msebera.android.httpclient.Header;
+import cz.msebera.android.httpclient.client.methods.HttpUriRequest;
+
+/**
+ * An {@link AsyncHttpResponseHandler} for requests made through a
+ * {@link com.loopj.android.http.SyncHttpClient} that simply records the response, so that it can
+ * be inspected by the calling thread once the request returns.
+ *
+ * <p>
+ * If the handler is given an {@link UploadHandle}, requests made through an
+ * {@link UploadHttpClient} are registered with it while they are in flight, so they can be
+ * aborted when the upload is paused or cancelled.
+ * </p>
+ */
+class SyncResponseHandler extends AsyncHttpResponseHandler {
+    private final UploadHandle uploadHandle;
+    private HttpUriRequest request;
+
+    private int statusCode;
+    private Header[] headers;
+    private byte[] responseBody;
+    private Throwable error;
+
+    SyncResponseHandler() {
+        this(null);
+    }
+
+    SyncResponseHandler(UploadHandle uploadHandle) {
+        this.uploadHandle = uploadHandle;
+    }
+
+    void setRequest(HttpUriRequest request) {
+        this.request = request;
+        if (uploadHandle != null) {
+            uploadHandle.register(request);
+        }
+    }
+
+    @Override
+    public void onFinish() {
+        if (uploadHandle != null && request != null) {
+            uploadHandle.unregister(request);
+        }
+    }
+
+    @Override
+    public void onSuccess(int statusCode, Header[] headers, byte[] responseBody) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.responseBody = responseBody;
+    }
+
+    @Override
+    public void onFailure(int statusCode, Header[] headers, byte[] responseBody, Throwable error) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.responseBody = responseBody;
+        this.error = error;
+    }
+
+    boolean isSuccessful() {
+        return error == null;
+    }
+
+    int getStatusCode() {
+        return statusCode;
+    }
+
+    Throwable getError() {
+        return error;
+    }
+
+    byte[] getResponseBody() {
+        return responseBody;
+    }
+
+    /**
+     * Returns the value of the first response header with the given name, ignoring case.
+     */
+    String getHeader(String name) {
+        if (headers != null) {
+            for (Header header : headers) {
+                if (header.getName().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,282 @@
+package com.isbx.androidtools.networking;
+
+import android.os.AsyncTask;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import cz.msebera.android.httpclient.client.methods.HttpUriRequest;
+
+/**
+ * A handle to an upload request made through an {@link UploadManager}, which allows the request to
+ * be cancelled, paused, and resumed, and its status to be queried.
+ *
+ * <p>
+ * Pausing or cancelling a request aborts any of its HTTP requests that are in flight
+ * immediately, rather than waiting for the current file to finish uploading. When a paused
+ * request is resumed, the files that were interrupted are uploaded again from the start, except
+ * for multipart uploads, which only upload again the parts that were interrupted.
+ * </p>
+ *
+ * @see UploadManager#upload(android.net.Uri, UploadManager.UploadListener)
+ * @see UploadManager#uploadImages(android.net.Uri[], UploadManager.UploadListener)
+ */
+public class UploadHandle {
+
+    /**
+     * The status of an upload request.
+     */
+    public enum Status {
+        /**
+         * The request is waiting to start.
+         */
+        PENDING,
+        /**
+         * The request is uploading files.
+         */
+        RUNNING,
+        /**
+         * The request has been paused and is not uploading any files.
+         */
+        PAUSED,
+        /**
+         * The request has finished uploading all of its files. With a {@link RetryPolicy}, some
+         * files may still have failed.
+         */
+        COMPLETED,
+        /**
+         * The request was stopped because a file failed to upload.
+         */
+        FAILED,
+        /**
+         * The request was cancelled through {@link UploadHandle#cancel()}.
+         */
+        CANCELLED
+    }
+
+    private final Set<HttpUriRequest> requests = new HashSet<>();
+
+    private AsyncTask<?, ?, ?> task;
+    private UploadScheduler scheduler;
+    private Status status = Status.PENDING;
+    private int priority;
+    private long nextRound;
+    private boolean paused;
+    private boolean cancelled;
+    private boolean aborted;
+    private int pauseCount;
+
+    UploadHandle() {
+    }
+
+    /**
+     * Cancels the request. Files that are uploading are aborted immediately, and no further
+     * callbacks will be made to the request's listener. Cancelling a request that has already
+     * finished has no effect.
+     */
+    public void cancel() {
+        AsyncTask<?, ?, ?> task;
+        synchronized (this) {
+            if (isFinished()) {
+                return;
+            }
+            cancelled = true;
+            status = Status.CANCELLED;
+            abortRequests();
+            notifyAll();
+            task = this.task;
+        }
+
+        if (task != null) {
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * Pauses the request. Files that are uploading are aborted immediately, and no new files will
+     * be started until {@link #resume()} is called.
+     */
+    public synchronized void pause() {
+        if (paused || isFinished()) {
+            return;
+        }
+        paused = true;
+        pauseCount++;
+        abortRequests();
+    }
+
+    /**
+     * Resumes a paused request, uploading the files that were interrupted or not started yet.
+     */
+    public synchronized void resume() {
+        if (!paused) {
+            return;
+        }
+        paused = false;
+        notifyAll();
+    }
+
+    /**
+     * Sets the priority of the request. Files of requests with a higher priority are uploaded
+     * before the files of requests with a lower priority that are made through the same
+     * {@link UploadManager}, while requests with equal priorities take turns uploading their
+     * files. Changing the priority affects the files that are still waiting to be uploaded. The
+     * default priority is {@code 0}.
+     *
+     * @param priority The priority of the request
+     *
+     * @see UploadHandle#getPriority()
+     */
+    public void setPriority(int priority) {
+        UploadScheduler scheduler;
+        synchronized (this) {
+            if (this.priority == priority) {
+                return;
+            }
+            this.priority = priority;
+            scheduler = this.scheduler;
+        }
+
+        if (scheduler != null) {
+            scheduler.reprioritize(this);
+        }
+    }
+
+    /**
+     * Returns the priority of the request.
+     *
+     * @return The priority of the request
+     *
+     * @see UploadHandle#setPriority(int)
+     */
+    public synchronized int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Returns the current status of the request.
+     *
+     * @return The {@link Status} of the request
+     */
+    public synchronized Status getStatus() {
+        if (paused && !isFinished()) {
+            return Status.PAUSED;
+        }
+        return status;
+    }
+
+    /**
+     * Returns whether the request is currently paused.
+     *
+     * @return {@code true} if the request is paused, {@code false} otherwise
+     */
+    public synchronized boolean isPaused() {
+        return getStatus() == Status.PAUSED;
+    }
+
+    /**
+     * Returns whether the request has been cancelled.
+     *
+     * @return {@code true} if the request has been cancelled, {@code false} otherwise
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns whether the request has finished, whether it completed, failed, or was cancelled.
+     *
+     * @return {@code true} if the request has finished, {@code false} otherwise
+     */
+    public synchronized boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    synchronized void setTask(AsyncTask<?, ?, ?> task) {
+        this.task = task;
+    }
+
+    synchronized void setScheduler(UploadScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Returns the scheduling round of this request's next file, as tracked by the
+     * {@link UploadScheduler}.
+     */
+    synchronized long getNextRound() {
+        return nextRound;
+    }
+
+    synchronized void setNextRound(long nextRound) {
+        this.nextRound = nextRound;
+    }
+
+    synchronized void setStatus(Status status) {
+        if (!isFinished()) {
+            this.status = status;
+        }
+    }
+
+    /**
+     * Returns the number of times this request has been paused, so that callers can tell whether a
+     * request failed because it was aborted by a pause.
+     */
+    synchronized int getPauseCount() {
+        return pauseCount;
+    }
+
+    /**
+     * Blocks the calling thread while the request is paused.
+     *
+     * @return {@code false} if the request has been cancelled, {@code true} otherwise
+     */
+    synchronized boolean awaitResumed() {
+        while (paused && !cancelled && !aborted) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return !cancelled && !aborted;
+    }
+
+    /**
+     * Aborts the HTTP requests in flight of a request that failed as a whole, and keeps its
+     * uploads from starting again, like {@link #cancel()} but without reporting the request as
+     * cancelled.
+     */
+    synchronized void abort() {
+        aborted = true;
+        abortRequests();
+        notifyAll();
+    }
+
+    /**
+     * Returns whether the request was aborted with {@link #abort()}.
+     */
+    synchronized boolean isAborted() {
+        return aborted;
+    }
+
+    synchronized void register(HttpUriRequest request) {
+        if (paused || cancelled || aborted) {
+            request.abort();
+        } else {
+            requests.add(request);
+        }
+    }
+
+    synchronized void unregister(HttpUriRequest request) {
+        requests.remove(request);
+    }
+
+    private void abortRequests() {
+        for (HttpUriRequest request : requests) {
+            request.abort();
+        }
+        requests.clear();
+    }
+}
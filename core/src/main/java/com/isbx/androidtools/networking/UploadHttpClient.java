@@ -0,0 +1,81 @@
+package com.isbx.androidtools.networking;
+
+import android.content.Context;
+
+import com.loopj.android.http.AsyncHttpRequest;
+import com.loopj.android.http.ResponseHandlerInterface;
+import com.loopj.android.http.SyncHttpClient;
+
+import cz.msebera.android.httpclient.client.methods.HttpUriRequest;
+import cz.msebera.android.httpclient.impl.client.DefaultHttpClient;
+import cz.msebera.android.httpclient.protocol.HttpContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link SyncHttpClient} that exposes the underlying {@link HttpUriRequest} of each request made
+ * with a {@link SyncResponseHandler}. Since a synchronous request only returns once it has
+ * finished, this is the only way another thread can abort it while it is blocked writing the
+ * request body to the socket.
+ *
+ * <p>
+ * When the configuration of an {@link UploadManager} changes, its client is replaced while
+ * uploads may still be using it. Upload requests and their files {@link #acquire()} the client
+ * while they use it, and a {@link #retire() retired} client shuts down its connection manager once
+ * the last of them {@link #release() releases} it.
+ * </p>
+ */
+class UploadHttpClient extends SyncHttpClient {
+    private int users;
+    private boolean retired;
+    private boolean shutDown;
+
+    /**
+     * Registers a user of this client, returning {@code false} if it was already shut down.
+     */
+    synchronized boolean acquire() {
+        if (shutDown) {
+            return false;
+        }
+        users++;
+        return true;
+    }
+
+    /**
+     * Unregisters a user of this client, shutting it down if it was retired and this was the last
+     * user.
+     */
+    synchronized void release() {
+        users--;
+        shutDownIfUnused();
+    }
+
+    /**
+     * Marks this client as replaced. Its idle connections are closed right away, and its
+     * connection manager is shut down once no user is left.
+     */
+    synchronized void retire() {
+        retired = true;
+        if (users > 0) {
+            getHttpClient().getConnectionManager().closeIdleConnections(0, TimeUnit.MILLISECONDS);
+        }
+        shutDownIfUnused();
+    }
+
+    private void shutDownIfUnused() {
+        if (retired && users == 0 && !shutDown) {
+            shutDown = true;
+            getHttpClient().getConnectionManager().shutdown();
+        }
+    }
+
+    @Override
+    protected AsyncHttpRequest newAsyncHttpRequest(DefaultHttpClient client, HttpContext httpContext,
+                                                   HttpUriRequest uriRequest, String contentType,
+                                                   ResponseHandlerInterface responseHandler, Context context) {
+        if (responseHandler instanceof SyncResponseHandler) {
+            ((SyncResponseHandler) responseHandler).setRequest(uriRequest);
+        }
+        return super.newAsyncHttpRequest(client, httpContext, uriRequest, contentType, responseHandler, context);
+    }
+}
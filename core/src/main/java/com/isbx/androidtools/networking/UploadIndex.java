@@ -0,0 +1,126 @@
+package com.isbx.androidtools.networking;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.Map;
+
+/**
+ * A persistent index of the files uploaded through an {@link UploadManager}, keyed by a SHA-256
+ * digest of their content. When an UploadManager has an index, every file is digested while it is
+ * read, and files whose content was already uploaded with the same ACL are not sent again; the url
+ * of the earlier upload is reported instead. This avoids uploading the same photo again each time
+ * a user picks it.
+ *
+ * <p>
+ * To digest a file in the same pass as it is uploaded, files up to
+ * {@link UploadIndex#getMaxFileSize()} bytes are read into memory first, and are uploaded from
+ * memory if the index doesn't contain them. Larger files, including all multipart uploads, are
+ * uploaded as usual without consulting the index.
+ * </p>
+ *
+ * <p>
+ * The index assumes uploaded objects are never deleted from S3. If they may be, call
+ * {@link UploadIndex#remove(String)} or {@link UploadIndex#clear()} accordingly. Separate indexes
+ * should be used for {@link UploadManager}s with different credentials providers.
+ * </p>
+ *
+ * @see UploadManager#setUploadIndex(UploadIndex)
+ */
+public class UploadIndex {
+
+    private static final String DEFAULT_NAME = "upload_index";
+    private static final int DEFAULT_MAX_FILE_SIZE = 10 * 1024 * 1024;
+
+    private final SharedPreferences preferences;
+    private int maxFileSize = DEFAULT_MAX_FILE_SIZE;
+
+    /**
+     * Opens the default upload index.
+     *
+     * @param context The {@link Context} to use for locating the index
+     */
+    public UploadIndex(Context context) {
+        this(context, DEFAULT_NAME);
+    }
+
+    /**
+     * Opens an upload index with the given name.
+     *
+     * @param context The {@link Context} to use for locating the index
+     * @param name The name of the index, used as the name of its {@link SharedPreferences} file
+     */
+    public UploadIndex(Context context, String name) {
+        this.preferences = context.getSharedPreferences(name, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns the size in bytes of the largest file that will be checked against this index.
+     *
+     * @return The maximum size of indexed files in bytes
+     *
+     * @see UploadIndex#setMaxFileSize(int)
+     */
+    public int getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * Sets the size in bytes of the largest file that will be checked against this index. Files
+     * up to this size are held in memory while they are digested and uploaded, so this bounds the
+     * memory used by each concurrent upload. The default is 10 MB.
+     *
+     * @param maxFileSize The maximum size of indexed files in bytes
+     *
+     * @see UploadIndex#getMaxFileSize()
+     */
+    public void setMaxFileSize(int maxFileSize) {
+        if (maxFileSize < 0) {
+            throw new IllegalArgumentException("maxFileSize cannot be negative");
+        }
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Removes every entry pointing to the given url, for example after the object was deleted
+     * from S3.
+     *
+     * @param url The S3 url of the uploaded file
+     */
+    public void remove(String url) {
+        SharedPreferences.Editor editor = preferences.edit();
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            if (url.equals(entry.getValue())) {
+                editor.remove(entry.getKey());
+            }
+        }
+        editor.apply();
+    }
+
+    /**
+     * Removes all entries from this index.
+     */
+    public void clear() {
+        preferences.edit().clear().apply();
+    }
+
+    /**
+     * Returns the url the file with the given digest was uploaded to with {@code acl}, or
+     * {@code null} if it hasn't been uploaded.
+     */
+    String getUrl(String digest, String acl) {
+        return preferences.getString(getKey(digest, acl), null);
+    }
+
+    /**
+     * Records that the file with the given digest was uploaded to {@code url} with {@code acl}.
+     */
+    void put(String digest, String acl, String url) {
+        preferences.edit().putString(getKey(digest, acl), url).apply();
+    }
+
+    private static String getKey(String digest, String acl) {
+        // an object uploaded privately can't stand in for a public one and vice versa
+        return acl + ":" + digest;
+    }
+}
@@ -0,0 +1,381 @@
+package com.isbx.androidtools.networking;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A durable record of the upload requests made through an {@link UploadManager}, allowing
+ * requests that were interrupted by the app's process being killed to be resumed on the next
+ * start.
+ *
+ * <p>
+ * The journal is an append-only file in the app's internal storage. A record is appended when a
+ * request starts (with the S3 key chosen for each of its files), whenever an individual file
+ * finishes uploading (with its resulting url), and when the request finishes. When the journal is
+ * opened, it is replayed to find the requests that never finished, which are available from
+ * {@link UploadJournal#getPendingUploads()} and can be resumed with
+ * {@link UploadManager#resume(PendingUpload, UploadManager.UploadListener)}. Files that were
+ * already uploaded are never sent again; their recorded urls are reused instead.
+ * </p>
+ *
+ * <p>
+ * A request that fails or is cancelled while the process is alive is reported to its listener as
+ * usual and is considered finished, so it will not be resumed. Note that resumed files are
+ * uploaded using the S3 keys recorded for them originally, so the
+ * {@link com.isbx.androidtools.networking.s3.S3CredentialsProvider} must issue policies that
+ * accept those keys. {@code content://} Uris may also lose their read permission once the
+ * process that received them dies, so copying files to app storage before uploading them
+ * (as {@link com.isbx.androidtools.media.ImageResizer} does) is recommended.
+ * </p>
+ *
+ * @see UploadManager#setJournal(UploadJournal)
+ */
+public class UploadJournal {
+
+    private static final String DEFAULT_FILE_NAME = "upload_journal";
+
+    private static final String TYPE_PENDING = "pending";
+    private static final String TYPE_COMPLETED = "completed";
+    private static final String TYPE_FINISHED = "finished";
+
+    private final File file;
+    private final Gson gson = new Gson();
+    private final Map<String, PendingUpload> pendingUploads = new LinkedHashMap<>();
+
+    private OutputStream out;
+
+    /**
+     * Opens the default upload journal in the app's internal storage, replaying any records
+     * written by previous instances.
+     *
+     * @param context The {@link Context} to use for locating the journal file
+     */
+    public UploadJournal(Context context) {
+        this(context, DEFAULT_FILE_NAME);
+    }
+
+    /**
+     * Opens an upload journal with the given file name in the app's internal storage, replaying
+     * any records written by previous instances. Separate journals should be used for
+     * {@link UploadManager}s with different credentials providers.
+     *
+     * @param context The {@link Context} to use for locating the journal file
+     * @param fileName The name of the journal file
+     */
+    public UploadJournal(Context context, String fileName) {
+        this.file = new File(context.getFilesDir(), fileName);
+        replay();
+        compact();
+    }
+
+    /**
+     * Returns the upload requests recorded in this journal that never finished and are not
+     * currently being uploaded, in the order they were started.
+     *
+     * @return A list of {@link PendingUpload}s that can be resumed
+     */
+    public synchronized List<PendingUpload> getPendingUploads() {
+        List<PendingUpload> result = new ArrayList<>();
+        for (PendingUpload pendingUpload : pendingUploads.values()) {
+            if (!pendingUpload.active) {
+                result.add(pendingUpload);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Discards all records in this journal, including those of unfinished requests.
+     */
+    public synchronized void clear() {
+        pendingUploads.clear();
+        closeOutput();
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    synchronized void recordStarted(String id, Uri[] uris, String[] keys, String acl) {
+        PendingUpload pendingUpload = new PendingUpload(id, uris.length, acl);
+        pendingUpload.active = true;
+        pendingUploads.put(id, pendingUpload);
+
+        for (int i = 0; i < uris.length; i++) {
+            Record record = new Record(TYPE_PENDING, id);
+            record.count = uris.length;
+            record.index = i;
+            record.uri = String.valueOf(uris[i]);
+            record.key = keys[i];
+            record.acl = acl;
+            pendingUpload.apply(record);
+            append(record);
+        }
+    }
+
+    synchronized void recordResumed(PendingUpload pendingUpload) {
+        if (pendingUpload.active || pendingUploads.get(pendingUpload.id) != pendingUpload) {
+            throw new IllegalStateException("Upload " + pendingUpload.id + " is not pending");
+        }
+        pendingUpload.active = true;
+    }
+
+    synchronized void recordCompleted(String id, int index, String url) {
+        Record record = new Record(TYPE_COMPLETED, id);
+        record.index = index;
+        record.url = url;
+
+        PendingUpload pendingUpload = pendingUploads.get(id);
+        if (pendingUpload != null) {
+            pendingUpload.apply(record);
+        }
+        append(record);
+    }
+
+    synchronized void recordFinished(String id) {
+        pendingUploads.remove(id);
+        append(new Record(TYPE_FINISHED, id));
+    }
+
+    private void replay() {
+        if (!file.exists()) {
+            return;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Record record;
+                try {
+                    record = gson.fromJson(line, Record.class);
+                } catch (JsonParseException e) {
+                    // the last record may have been cut short when the process died
+                    continue;
+                }
+                if (record == null || record.id == null) {
+                    continue;
+                }
+
+                if (TYPE_FINISHED.equals(record.type)) {
+                    pendingUploads.remove(record.id);
+                    continue;
+                }
+
+                PendingUpload pendingUpload = pendingUploads.get(record.id);
+                if (pendingUpload == null && TYPE_PENDING.equals(record.type)) {
+                    pendingUpload = new PendingUpload(record.id, record.count, record.acl);
+                    pendingUploads.put(record.id, pendingUpload);
+                }
+                if (pendingUpload != null) {
+                    pendingUpload.apply(record);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Rewrites the journal so it only contains the records of unfinished requests.
+     */
+    private void compact() {
+        File tmp = new File(file.getPath() + ".tmp");
+        OutputStream tmpOut = null;
+        try {
+            tmpOut = new FileOutputStream(tmp);
+            for (PendingUpload pendingUpload : pendingUploads.values()) {
+                for (Record record : pendingUpload.toRecords()) {
+                    tmpOut.write((gson.toJson(record) + "\n").getBytes("UTF-8"));
+                }
+            }
+            tmpOut.close();
+            tmpOut = null;
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Failed replacing upload journal");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+        } finally {
+            if (tmpOut != null) {
+                try {
+                    tmpOut.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void append(Record record) {
+        try {
+            if (out == null) {
+                out = new FileOutputStream(file, true);
+            }
+            out.write((gson.toJson(record) + "\n").getBytes("UTF-8"));
+            out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeOutput();
+        }
+    }
+
+    private void closeOutput() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * A single line of the journal file.
+     */
+    private static class Record {
+        String type;
+        String id;
+        int count;
+        int index;
+        String uri;
+        String key;
+        String url;
+        String acl;
+
+        Record(String type, String id) {
+            this.type = type;
+            this.id = id;
+        }
+    }
+
+    /**
+     * An upload request recorded in an {@link UploadJournal} that has not finished yet.
+     *
+     * @see UploadManager#resume(PendingUpload, UploadManager.UploadListener)
+     */
+    public static class PendingUpload {
+        private final String id;
+        private final String acl;
+        private final Uri[] uris;
+        private final String[] keys;
+        private final String[] urls;
+
+        private boolean active;
+
+        private PendingUpload(String id, int count, String acl) {
+            this.id = id;
+            this.acl = acl;
+            this.uris = new Uri[count];
+            this.keys = new String[count];
+            this.urls = new String[count];
+        }
+
+        private void apply(Record record) {
+            if (record.index < 0 || record.index >= uris.length) {
+                return;
+            }
+
+            if (TYPE_PENDING.equals(record.type)) {
+                uris[record.index] = record.uri != null ? Uri.parse(record.uri) : null;
+                keys[record.index] = record.key;
+            } else if (TYPE_COMPLETED.equals(record.type)) {
+                urls[record.index] = record.url;
+            }
+        }
+
+        private List<Record> toRecords() {
+            List<Record> records = new ArrayList<>();
+            for (int i = 0; i < uris.length; i++) {
+                Record record = new Record(TYPE_PENDING, id);
+                record.count = uris.length;
+                record.index = i;
+                record.uri = uris[i] != null ? uris[i].toString() : null;
+                record.key = keys[i];
+                record.acl = acl;
+                records.add(record);
+
+                if (urls[i] != null) {
+                    record = new Record(TYPE_COMPLETED, id);
+                    record.index = i;
+                    record.url = urls[i];
+                    records.add(record);
+                }
+            }
+            return records;
+        }
+
+        /**
+         * Returns the unique id of this upload request.
+         *
+         * @return The id of the request
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Returns the {@link Uri}s of the files in this upload request, in the order they were
+         * originally provided to the {@link UploadManager}.
+         *
+         * @return An array of {@link Uri}s
+         */
+        public Uri[] getUris() {
+            return uris.clone();
+        }
+
+        /**
+         * Returns the number of files in this request that were uploaded before it was
+         * interrupted.
+         *
+         * @return The number of completed files
+         */
+        public int getCompletedCount() {
+            int count = 0;
+            for (String url : urls) {
+                if (url != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        String getAcl() {
+            return acl;
+        }
+
+        String[] getKeys() {
+            return keys.clone();
+        }
+
+        String[] getUrls() {
+            return urls.clone();
+        }
+    }
+}
@@ -1,26 +1,46 @@
 package com.isbx.androidtools.networking;
 
-import android.content.ContentResolver;
 import android.content.Context;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.Looper;
-import android.webkit.MimeTypeMap;
+import android.os.SystemClock;
 
+import com.isbx.androidtools.media.ImageResizeConfig;
+import com.isbx.androidtools.media.ImageResizer;
+import com.isbx.androidtools.networking.s3.S3BatchCredentialsProvider;
 import com.isbx.androidtools.networking.s3.S3Credentials;
 import com.isbx.androidtools.networking.s3.S3CredentialsProvider;
-import com.loopj.android.http.AsyncHttpResponseHandler;
-import com.loopj.android.http.RequestParams;
+import com.isbx.androidtools.networking.s3.S3MultipartCredentials;
+import com.isbx.androidtools.networking.s3.S3MultipartCredentialsProvider;
+import com.loopj.android.http.AsyncHttpClient;
 import com.loopj.android.http.SyncHttpClient;
 
+import cz.msebera.android.httpclient.entity.InputStreamEntity;
+
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.ref.WeakReference;
-
-import cz.msebera.android.httpclient.Header;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This class provides a simple interface for uploading an arbitrary number of files to Amazon S3.
@@ -40,6 +60,18 @@ import cz.msebera.android.httpclient.Header;
  *
  * <code>https://{credentials.getBucket()}.s3.amazonaws.com/{credentials.getUniqueFilePrefix()}{suffixRule.getSuffix()}.jpg</code>
  *
+ * <p>
+ * If the credentials provider implements {@link S3BatchCredentialsProvider}, credentials for
+ * every file in a request are retrieved with a single call, allowing each file to be uploaded with
+ * its own policy and key prefix.
+ * </p>
+ *
+ * <p>
+ * If the credentials for a file include a presigned {@link S3Credentials#getUploadUrl()}, the file
+ * is instead sent as the raw body of a PUT request to that url, with an exact Content-Length and
+ * without multipart/form-data encoding.
+ * </p>
+ *
  * @see S3CredentialsProvider
  * @see S3Credentials
  */
@@ -49,6 +81,12 @@ public class UploadManager {
     private static final String DEFAULT_ACL = "public-read";
     private static final int DEFAULT_SUCCESS_STATUS = 201;
     private static final int UPLOAD_TIMEOUT_MS = 30000;
+    private static final int DEFAULT_MAX_CONCURRENT_UPLOADS = 1;
+    private static final long EXECUTOR_KEEP_ALIVE_MS = 30000;
+    private static final int DEFAULT_MAX_CONNECTIONS = AsyncHttpClient.DEFAULT_MAX_CONNECTIONS;
+    private static final long MULTIPART_DISABLED = -1;
+    private static final int DEFAULT_MAX_CONCURRENT_PARTS = 3;
+    private static final long DEFAULT_PROGRESS_INTERVAL_MS = 100;
 
     /**
      * A convenience implementation of {@link SuffixRule} that will return a numerical suffix based
@@ -67,9 +105,71 @@ public class UploadManager {
     public static final SuffixRule SUFFIX_DIMENSIONS =
         new IndexedSuffixRule(new String[]{"original", "large", "medium", "small"});
 
+    /**
+     * A convenience implementation of {@link IndexedPriorityRule} to use together with
+     * {@link UploadManager#SUFFIX_DIMENSIONS}, which uploads the "small" variant first, followed
+     * by "medium", "large", and finally "original".
+     */
+    public static final PriorityRule PRIORITY_DIMENSIONS = new IndexedPriorityRule(new int[]{0, 1, 2, 3});
+
     private Context context;
     private S3CredentialsProvider credentialsProvider;
 
+    private int maxConcurrentUploads = DEFAULT_MAX_CONCURRENT_UPLOADS;
+    private UploadScheduler uploadExecutor;
+    private ThreadPoolExecutor taskExecutor;
+    private PriorityRule priorityRule;
+
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private int connectTimeout = UPLOAD_TIMEOUT_MS;
+    private int responseTimeout = UPLOAD_TIMEOUT_MS;
+    private UploadHttpClient httpClient;
+
+    private long multipartThreshold = MULTIPART_DISABLED;
+    private long multipartPartSize = MultipartUpload.MIN_PART_SIZE;
+    private int maxConcurrentParts = DEFAULT_MAX_CONCURRENT_PARTS;
+    private ThreadPoolExecutor partExecutor;
+
+    private long progressInterval = DEFAULT_PROGRESS_INTERVAL_MS;
+
+    private UploadJournal journal;
+    private RetryPolicy retryPolicy;
+    private UploadIndex uploadIndex;
+    private boolean integrityCheckEnabled;
+    private boolean sha256Enabled;
+    private UploadMetricsListener metricsListener;
+    private AdaptiveConcurrencyPolicy adaptiveConcurrency;
+    private ConcurrencyController concurrencyController;
+    private final ConcurrencyController.Callback concurrencyCallback = new ConcurrencyController.Callback() {
+        @Override
+        public void onLimitChanged(int previousLimit, int limit, long throughput, double errorRate) {
+            resizeUploadExecutor();
+            UploadMetricsListener listener = metricsListener;
+            if (listener instanceof AdaptiveConcurrencyListener) {
+                ((AdaptiveConcurrencyListener) listener)
+                    .onConcurrencyChanged(previousLimit, limit, throughput, errorRate);
+            }
+        }
+    };
+
+    private ConnectivityMonitor connectivityMonitor;
+    private NetworkPolicy networkPolicy = new NetworkPolicy();
+    private NetworkGate networkGate;
+    private ConnectivityMonitor.NetworkType networkType;
+    private final ConnectivityMonitor.Listener networkListener = new ConnectivityMonitor.Listener() {
+        @Override
+        public void onNetworkChanged(ConnectivityMonitor.NetworkType networkType) {
+            NetworkGate gate;
+            synchronized (UploadManager.this) {
+                setNetworkType(networkType);
+                gate = networkGate;
+            }
+            if (gate != null) {
+                gate.notifyChanged();
+            }
+        }
+    };
+
     /**
      * Creates a new UploadManager instance with the given {@link S3CredentialsProvider} to
      * configure and authenticate upload requests.
@@ -85,277 +185,1978 @@ public class UploadManager {
     }
 
     /**
-     * Uploads an array of images to S3 in the background in series.
+     * Returns the maximum number of files this UploadManager will upload in parallel.
      *
-     * @param imageUris An array {@link Uri}s representing the images to be uploaded
-     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
-     *                 and progress events
+     * @return The maximum number of concurrent upload requests
+     *
+     * @see UploadManager#setMaxConcurrentUploads(int)
      */
-    public void uploadImages(Uri[] imageUris, UploadListener listener) {
-        UploadTask uploadTask = new UploadTask(context, credentialsProvider, listener);
-        uploadTask.execute(imageUris);
+    public int getMaxConcurrentUploads() {
+        return maxConcurrentUploads;
     }
 
     /**
-     * Uploads an array of images to S3 in the background in series using the given
-     * {@link SuffixRule} to configure the uploaded S3 keys.
+     * Sets the maximum number of files this UploadManager will upload in parallel. The limit is
+     * shared by all upload requests made through this instance. The default value of {@code 1}
+     * uploads every file in series.
      *
-     * @param imageUris An array {@link Uri}s representing the images to be uploaded
-     * @param suffixRule A {@link SuffixRule} that will be used to configure the uploaded S3 key for
-     *                   each file
-     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
-     *                 and progress events
+     * <p>
+     * Regardless of the order in which the individual uploads finish, the urls passed to
+     * {@link UploadListener#onUploadComplete(String[])} are always in the same order that the
+     * files were provided to the UploadManager.
+     * </p>
+     *
+     * <p>
+     * With an {@link AdaptiveConcurrencyPolicy}, this is the upper bound the adaptive limit can
+     * grow to.
+     * </p>
+     *
+     * @param maxConcurrentUploads The maximum number of concurrent upload requests, must be
+     *                             greater than zero
+     *
+     * @see UploadManager#getMaxConcurrentUploads()
      */
-    public void uploadImages(Uri[] imageUris, SuffixRule suffixRule, UploadListener listener) {
-        UploadTask uploadTask = new UploadTask(context, credentialsProvider, listener);
-        uploadTask.suffixRule = suffixRule;
-        uploadTask.execute(imageUris);
+    public void setMaxConcurrentUploads(int maxConcurrentUploads) {
+        if (maxConcurrentUploads < 1) {
+            throw new IllegalArgumentException("maxConcurrentUploads must be greater than zero");
+        }
+
+        synchronized (this) {
+            this.maxConcurrentUploads = maxConcurrentUploads;
+            if (concurrencyController != null) {
+                concurrencyController.setMaxLimit(maxConcurrentUploads);
+            }
+            resizeUploadExecutor();
+        }
     }
 
-    /**
-     * Uploads an array of images to S3 in the background in series using the given
-     * {@link SuffixRule} to configure the uploaded S3 keys with the ACL parameter (private/public).
-     *
-     * @param imageUris An array {@link Uri}s representing the images to be uploaded
-     * @param suffixRule A {@link SuffixRule} that will be used to configure the uploaded S3 key for
-     *                   each file
-     * @param acl A string {@link String}s representing the ACL
-     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
-     *                 and progress events
-     */
-    public void uploadImages(Uri[] imageUris, SuffixRule suffixRule, String acl, UploadListener listener) {
-        UploadTask uploadTask = new UploadTask(context, credentialsProvider, listener);
-        uploadTask.suffixRule = suffixRule;
-        uploadTask.acl = acl;
-        uploadTask.execute(imageUris);
+    private synchronized UploadScheduler getUploadExecutor() {
+        if (uploadExecutor == null) {
+            uploadExecutor = new UploadScheduler(getEffectiveMaxConcurrentUploads(), EXECUTOR_KEEP_ALIVE_MS);
+        }
+        return uploadExecutor;
+    }
+
+    private synchronized void resizeUploadExecutor() {
+        if (uploadExecutor != null) {
+            int threads = getEffectiveMaxConcurrentUploads();
+            // grow the maximum before the core size (and vice versa) so core <= max always holds
+            if (threads > uploadExecutor.getMaximumPoolSize()) {
+                uploadExecutor.setMaximumPoolSize(threads);
+                uploadExecutor.setCorePoolSize(threads);
+            } else {
+                uploadExecutor.setCorePoolSize(threads);
+                uploadExecutor.setMaximumPoolSize(threads);
+            }
+        }
     }
 
     /**
-     * Uploads a media object to S3 in the background.
-     *
-     * @param mediaUri A {@link Uri} representing the media to be uploaded
-     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
-     *                 and progress events
+     * Returns {@link #maxConcurrentUploads}, lowered to the {@link NetworkPolicy}'s limit for the
+     * current network and the adaptive limit if there are any.
      */
-    public void upload(Uri mediaUri, UploadListener listener) {
-        UploadTask uploadTask = new UploadTask(context, credentialsProvider, listener);
-        uploadTask.execute(mediaUri);
+    private synchronized int getEffectiveMaxConcurrentUploads() {
+        int limit = networkType != null ? networkPolicy.getMaxConcurrentUploads(networkType) : 0;
+        int max = limit > 0 ? Math.min(limit, maxConcurrentUploads) : maxConcurrentUploads;
+        return concurrencyController != null ? Math.min(concurrencyController.getLimit(), max) : max;
     }
 
     /**
-     * Uploads a media object to S3 in the background using the given {@link SuffixRule} to configure the
-     * uploaded S3 key.
+     * Returns the number of files this UploadManager currently uploads in parallel at most. This
+     * is {@link UploadManager#getMaxConcurrentUploads()}, unless it is lowered by the
+     * {@link NetworkPolicy} for the current network or by an {@link AdaptiveConcurrencyPolicy}.
      *
-     * @param mediaUri A {@link Uri} representing the media to be uploaded
-     * @param suffixRule A {@link SuffixRule} that will be used to configure the uploaded S3 key for
-     *                   this file
-     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
-     *                 and progress events
+     * @return The current maximum number of concurrent upload requests
+     *
+     * @see UploadManager#setAdaptiveConcurrency(AdaptiveConcurrencyPolicy)
      */
-    public void upload(Uri mediaUri, SuffixRule suffixRule, UploadListener listener) {
-        UploadTask uploadTask = new UploadTask(context, credentialsProvider, listener);
-        uploadTask.suffixRule = suffixRule;
-        uploadTask.execute(mediaUri);
+    public int getCurrentMaxConcurrentUploads() {
+        return getEffectiveMaxConcurrentUploads();
     }
 
     /**
-     * Uploads a media object to S3 in the background using the given {@link SuffixRule} to configure the
-     * uploaded S3 key with the ACL parameter (private/public)
+     * Returns the {@link AdaptiveConcurrencyPolicy} this UploadManager adapts the number of
+     * concurrent uploads with.
      *
-     * @param mediaUri A {@link Uri} representing the media to be uploaded
-     * @param suffixRule A {@link SuffixRule} that will be used to configure the uploaded S3 key for
-     *                   this file
-     * @param acl A string {@link String}s representing the ACL
-     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
-     *                 and progress events
+     * @return The {@link AdaptiveConcurrencyPolicy}, or {@code null} if the number of concurrent
+     *         uploads is fixed
+     *
+     * @see UploadManager#setAdaptiveConcurrency(AdaptiveConcurrencyPolicy)
      */
-    public void upload(Uri mediaUri, SuffixRule suffixRule, String acl, UploadListener listener) {
-        UploadTask uploadTask = new UploadTask(context, credentialsProvider, listener);
-        uploadTask.suffixRule = suffixRule;
-        uploadTask.acl = acl;
-        uploadTask.execute(mediaUri);
+    public synchronized AdaptiveConcurrencyPolicy getAdaptiveConcurrency() {
+        return adaptiveConcurrency;
     }
 
-
     /**
-     * Implementation of {@link AsyncTask} that uploads an arbitrary number of {@link Uri}s to
-     * S3 in series. The configuration specifying how the file should be uploaded (bucket name,
-     * key, authentication, etc) is determined by an {@link S3CredentialsProvider} passed in to the
-     * task.
+     * Sets an {@link AdaptiveConcurrencyPolicy} to adapt the number of files uploaded in parallel
+     * to the throughput and failures observed. The number of concurrent uploads then grows while
+     * that increases the combined throughput, up to {@link UploadManager#getMaxConcurrentUploads()},
+     * and shrinks quickly when uploads time out or the server is overloaded.
      *
      * <p>
-     * By default, the task uses the {@link UploadManager#SUFFIX_INCREMENTAL} instance as a
-     * {@link SuffixRule} for modifying the S3 keys for successive uploads. This can be configured
-     * with a different {@link SuffixRule} if custom naming conventions are required.
+     * Each change is reported to the {@link UploadMetricsListener} if it implements
+     * {@link AdaptiveConcurrencyListener}, and the current limit is available through
+     * {@link UploadManager#getCurrentMaxConcurrentUploads()}.
      * </p>
      *
-     * <p>
-     * If a single upload fails, the task will be cancelled and the remaining files will not be
-     * uploaded.
-     * </p>
+     * @param adaptiveConcurrency The {@link AdaptiveConcurrencyPolicy} to use, or {@code null} to
+     *                            always allow {@link UploadManager#getMaxConcurrentUploads()}
+     *                            uploads
+     *
+     * @see UploadManager#getAdaptiveConcurrency()
      */
-    private static class UploadTask extends AsyncTask<Uri, Integer, String[]> {
-        private WeakReference<Context> context;
-        private S3CredentialsProvider credentialsProvider;
-        private UploadListener listener;
-        private SuffixRule suffixRule = SUFFIX_INCREMENTAL;
-        private String acl = DEFAULT_ACL;
+    public synchronized void setAdaptiveConcurrency(AdaptiveConcurrencyPolicy adaptiveConcurrency) {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+        concurrencyController = adaptiveConcurrency != null
+            ? new ConcurrencyController(adaptiveConcurrency, maxConcurrentUploads, concurrencyCallback)
+            : null;
+        resizeUploadExecutor();
+    }
 
-        /**
-         * Creates a new UploadTask instance. The instance will use {@code credentialsProvider}
-         * for configuring it's upload parameters.
-         *
-         * @param context The current {@link Context}
-         * @param credentialsProvider An {@link S3CredentialsProvider} that will provide
-         *                            authentication and configuration information for each upload
-         * @param listener A {@link UploadListener} to be notified of completion, error, and
-         *                 progress events
-         */
-        public UploadTask(Context context, S3CredentialsProvider credentialsProvider, UploadListener listener) {
-            this.context = new WeakReference<>(context);
-            this.credentialsProvider = credentialsProvider;
-            this.listener = listener;
+    /**
+     * Returns {@code timeout}, or the {@link NetworkPolicy}'s timeout for the current network if
+     * there is one.
+     */
+    synchronized int getEffectiveTimeout(int timeout) {
+        int override = networkType != null ? networkPolicy.getTimeout(networkType) : 0;
+        return override > 0 ? override : timeout;
+    }
+
+    private synchronized ExecutorService getTaskExecutor() {
+        if (taskExecutor == null) {
+            // each request only waits for its files on the upload executor, so requests don't need
+            // to be bounded here, and must not wait for each other to start
+            taskExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, EXECUTOR_KEEP_ALIVE_MS,
+                TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>());
         }
+        return taskExecutor;
+    }
 
-        @Override
-        protected String[] doInBackground(Uri... uris) {
-            S3Credentials credentials = credentialsProvider.getCredentials();
-            if (credentials == null) {
-                publishFailure(new IOException("Failed retrieving S3 credentials from provider"), 0);
-                cancel(true);
-                return null;
-            }
+    /**
+     * Returns the {@link PriorityRule} used to order the files within each upload request.
+     *
+     * @return The {@link PriorityRule}, or {@code null} if files are uploaded in the order they
+     *         were provided
+     *
+     * @see UploadManager#setPriorityRule(PriorityRule)
+     */
+    public PriorityRule getPriorityRule() {
+        return priorityRule;
+    }
 
-            final String[] result = new String[uris.length];
+    /**
+     * Sets a {@link PriorityRule} to order the files within each upload request by. Files with a
+     * higher priority are uploaded before the other files of their request, for example
+     * {@link UploadManager#PRIORITY_DIMENSIONS} uploads small variants of an image before the
+     * original. Requests as a whole are ordered by {@link UploadHandle#setPriority(int)}.
+     *
+     * @param priorityRule The {@link PriorityRule} to use, or {@code null} to upload files in the
+     *                     order they were provided
+     *
+     * @see UploadManager#getPriorityRule()
+     */
+    public void setPriorityRule(PriorityRule priorityRule) {
+        this.priorityRule = priorityRule;
+    }
 
-            for (int i = 0; i < uris.length; i++) {
-                if (isCancelled()) {
-                    break;
-                }
+    /**
+     * Returns the number of files, across all upload requests made through this UploadManager,
+     * that are waiting for one of the {@link UploadManager#getMaxConcurrentUploads()} upload slots.
+     *
+     * @return The number of queued files
+     *
+     * @see UploadManager#getAverageQueueTime()
+     */
+    public int getQueuedUploadCount() {
+        UploadScheduler executor;
+        synchronized (this) {
+            executor = uploadExecutor;
+        }
+        return executor != null ? executor.getQueueDepth() : 0;
+    }
 
-                Uri uri = uris[i];
-                if (uri == null) {
-                    publishFailure(new IllegalArgumentException("Uri cannot be null"), i);
-                    cancel(true);
-                    break;
-                }
+    /**
+     * Returns a moving average of the time in milliseconds files waited for an upload slot before
+     * they started uploading, weighted towards the most recent files.
+     *
+     * @return The average queue time in milliseconds
+     *
+     * @see UploadManager#getQueuedUploadCount()
+     */
+    public long getAverageQueueTime() {
+        UploadScheduler executor;
+        synchronized (this) {
+            executor = uploadExecutor;
+        }
+        return executor != null ? executor.getAverageWaitTime() : 0;
+    }
 
-                Context ctx = context.get();
-                if (ctx == null) {
-                    publishFailure(new IllegalStateException("Context is dead"), i);
-                    cancel(true);
-                    break;
-                }
+    /**
+     * Returns the maximum number of pooled connections kept by this UploadManager's HTTP client.
+     *
+     * @return The maximum size of the connection pool
+     *
+     * @see UploadManager#setMaxConnections(int)
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
 
-                InputStream in = null;
-                try {
-                    in = ctx.getContentResolver().openInputStream(uri);
-                } catch (FileNotFoundException e) {
-                    e.printStackTrace();
-                    publishFailure(e, i);
-                    cancel(true);
-                    break;
-                }
+    /**
+     * Sets the maximum number of pooled connections kept by this UploadManager's HTTP client.
+     * All uploads made through this instance share a single client, so idle connections to the
+     * S3 bucket are kept alive and reused by later uploads instead of performing a new TCP and TLS
+     * handshake for every file. This value should be at least
+     * {@link UploadManager#getMaxConcurrentUploads()}.
+     *
+     * <p>
+     * Changing this value discards the current client. Uploads already in progress will finish
+     * on the old client, which closes its idle connections right away and the rest once those
+     * uploads finish, while new uploads will use a client with the updated configuration.
+     * </p>
+     *
+     * @param maxConnections The maximum size of the connection pool, must be greater than zero
+     *
+     * @see UploadManager#getMaxConnections()
+     */
+    public void setMaxConnections(int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be greater than zero");
+        }
 
-                String extension;
-                if (uri.getScheme().equals(ContentResolver.SCHEME_CONTENT)) {
-                    String mimeType = ctx.getContentResolver().getType(uri);
-                    extension = MimeTypeMap.getSingleton().getExtensionFromMimeType(mimeType);
-                } else {
-                    extension = MimeTypeMap.getFileExtensionFromUrl(String.valueOf(Uri.fromFile(new File(uri.getPath()))));
-                }
+        synchronized (this) {
+            this.maxConnections = maxConnections;
+            discardHttpClient();
+        }
+    }
 
-                if (in != null) {
-                    SyncHttpClient client = new SyncHttpClient();
-                    client.setTimeout(UPLOAD_TIMEOUT_MS);
-                    RequestParams params = new RequestParams();
-                    final String key = credentials.getUniqueFilePrefix()+suffixRule.getSuffix(uri, i)+"."+extension;
-                    params.setForceMultipartEntityContentType(true);
-                    params.put("key", key);
-                    params.put("AWSAccessKeyId", credentials.getAWSAccessKeyId());
-                    params.put("policy", credentials.getPolicy());
-                    params.put("signature", credentials.getSignature());
-                    params.put("success_action_status", DEFAULT_SUCCESS_STATUS);
-                    params.put("acl", acl);
-                    params.put("file", in);
-                    params.put("Content-Type", credentials.getContentType());
-
-                    final int index = i;
-                    final String url = String.format(S3_URL_FORMAT, credentials.getBucket());
-                    client.post(url, params, new AsyncHttpResponseHandler() {
-                        @Override
-                        public void onSuccess(int statusCode, Header[] headers, byte[] responseBody) {
-                            result[index] = url + "/" + key;
-                            publishProgress((int) (index /(float) result.length * 100));
-                        }
+    /**
+     * Returns the timeout in milliseconds for establishing a connection to S3.
+     *
+     * @return The connect timeout in milliseconds
+     *
+     * @see UploadManager#setConnectTimeout(int)
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
 
-                        @Override
-                        public void onFailure(int statusCode, Header[] headers, byte[] responseBody, Throwable error) {
-                            error.printStackTrace();
-                            publishFailure(error, index);
-                            cancel(true);
-                        }
-                    });
-                }
-            }
+    /**
+     * Sets the timeout in milliseconds for establishing a connection to S3. The default is 30
+     * seconds. Like {@link UploadManager#setMaxConnections(int)}, changing this value only affects
+     * uploads started afterwards.
+     *
+     * @param connectTimeout The connect timeout in milliseconds
+     *
+     * @see UploadManager#getConnectTimeout()
+     */
+    public synchronized void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        discardHttpClient();
+    }
 
-            return result;
-        }
+    /**
+     * Returns the socket timeout in milliseconds for upload requests made to S3.
+     *
+     * @return The response timeout in milliseconds
+     *
+     * @see UploadManager#setResponseTimeout(int)
+     */
+    public int getResponseTimeout() {
+        return responseTimeout;
+    }
 
-        private void publishFailure(final Throwable error, final int fileIndex) {
-            new Handler(Looper.getMainLooper()).post(new Runnable() {
-                @Override
-                public void run() {
-                    if (listener != null) {
-                        listener.onUploadFailed(error, fileIndex);
-                    }
-                }
-            });
-        }
+    /**
+     * Sets the socket timeout in milliseconds for upload requests made to S3. The default is 30
+     * seconds. Like {@link UploadManager#setMaxConnections(int)}, changing this value only affects
+     * uploads started afterwards.
+     *
+     * @param responseTimeout The response timeout in milliseconds
+     *
+     * @see UploadManager#getResponseTimeout()
+     */
+    public synchronized void setResponseTimeout(int responseTimeout) {
+        this.responseTimeout = responseTimeout;
+        discardHttpClient();
+    }
 
-        @Override
-        protected void onPostExecute(String[] urls) {
-            if (listener != null) {
-                listener.onUploadComplete(urls);
-            }
+    /**
+     * Returns the current HTTP client, creating it if needed, registered as used by an upload
+     * request until the request releases it.
+     */
+    private synchronized UploadHttpClient acquireHttpClient() {
+        if (httpClient == null) {
+            httpClient = new UploadHttpClient();
+            httpClient.setMaxConnections(maxConnections);
+            httpClient.setConnectTimeout(getEffectiveTimeout(connectTimeout));
+            httpClient.setResponseTimeout(getEffectiveTimeout(responseTimeout));
         }
+        // the current client is never retired, so this always succeeds
+        httpClient.acquire();
+        return httpClient;
+    }
 
-        @Override
-        protected void onProgressUpdate(Integer... values) {
-            if (listener != null && values.length > 0) {
-                listener.onProgress(values[0]);
-            }
+    /**
+     * Discards the current HTTP client, so that new uploads use a client with the current
+     * configuration. The old client keeps serving the uploads already using it, and its
+     * connections are closed once they finish.
+     */
+    private synchronized void discardHttpClient() {
+        if (httpClient != null) {
+            httpClient.retire();
+            httpClient = null;
         }
     }
 
+    /**
+     * Returns the minimum size in bytes of files that will be uploaded using the S3 multipart
+     * upload API.
+     *
+     * @return The multipart upload threshold in bytes, or a negative value if multipart uploads
+     *         are disabled
+     *
+     * @see UploadManager#setMultipartThreshold(long)
+     */
+    public long getMultipartThreshold() {
+        return multipartThreshold;
+    }
 
     /**
-     * A listener interface to receive completion, error, and progress events during an upload
-     * request
+     * Sets the minimum size in bytes of files that should be uploaded using the S3 multipart
+     * upload API. Files at or above this size are split into parts that are uploaded
+     * concurrently and retried individually, rather than being sent in a single request that
+     * must succeed as a whole. This is useful for large video files on slow connections.
+     *
+     * <p>
+     * Multipart uploads are disabled by default, and require this UploadManager's
+     * {@link S3CredentialsProvider} to implement {@link S3MultipartCredentialsProvider} and
+     * report {@link S3MultipartCredentialsProvider#isMultipartSupported()} when an upload
+     * starts. Otherwise large files are uploaded in a single request. Files
+     * whose size cannot be determined in advance are first copied to a temporary file in the
+     * app's cache directory, and are then uploaded according to their actual size.
+     * </p>
+     *
+     * @param multipartThreshold The multipart upload threshold in bytes, or a negative value to
+     *                           disable multipart uploads
+     *
+     * @see UploadManager#getMultipartThreshold()
+     * @see UploadManager#setMultipartPartSize(long)
      */
-    public interface UploadListener {
-        /**
-         * <p>
-         * This method is invoked whenever an individual file has finished uploading. The progress
-         * is an integer representation from 1 - 100 of how many files have been uploaded using the
-         * following formula:
-         * </p>
-         *
-         * <pre>
-         * <code>progress = numberOfFilesUploaded / totalNumberOfFiles * 100;</code>
-         * </pre>
-         *
-         * <p>
-         * If only one file is being uploaded, this will only be called once with a
-         * {@code progress} of 100.
-         * </p>
-         *
-         * @param progress The completion progress of the current upload request, as an integer in
-         *                 the range 1 - 100
-         */
-        void onProgress(int progress);
+    public void setMultipartThreshold(long multipartThreshold) {
+        this.multipartThreshold = multipartThreshold;
+    }
 
-        /**
+    /**
+     * Returns the preferred size in bytes of each part of a multipart upload.
+     *
+     * @return The part size in bytes
+     *
+     * @see UploadManager#setMultipartPartSize(long)
+     */
+    public long getMultipartPartSize() {
+        return multipartPartSize;
+    }
+
+    /**
+     * Sets the preferred size in bytes of each part of a multipart upload. The default and
+     * minimum value is 5 MB, as required by S3. The part size will be increased automatically for
+     * files that would otherwise need more than the 10,000 parts S3 allows.
+     *
+     * @param multipartPartSize The part size in bytes
+     *
+     * @see UploadManager#getMultipartPartSize()
+     */
+    public void setMultipartPartSize(long multipartPartSize) {
+        if (multipartPartSize < MultipartUpload.MIN_PART_SIZE) {
+            throw new IllegalArgumentException("multipartPartSize must be at least 5 MB");
+        }
+        this.multipartPartSize = multipartPartSize;
+    }
+
+    /**
+     * Returns the maximum number of parts of a single multipart upload that will be uploaded in
+     * parallel.
+     *
+     * @return The maximum number of concurrent part uploads per file
+     *
+     * @see UploadManager#setMaxConcurrentParts(int)
+     */
+    public int getMaxConcurrentParts() {
+        return maxConcurrentParts;
+    }
+
+    /**
+     * Sets the maximum number of parts of a single multipart upload that will be uploaded in
+     * parallel. Each part in flight is buffered in memory, so a multipart upload uses up to
+     * {@code maxConcurrentParts * multipartPartSize} bytes of memory. The default is {@code 3}.
+     *
+     * @param maxConcurrentParts The maximum number of concurrent part uploads per file, must be
+     *                           greater than zero
+     *
+     * @see UploadManager#getMaxConcurrentParts()
+     */
+    public void setMaxConcurrentParts(int maxConcurrentParts) {
+        if (maxConcurrentParts < 1) {
+            throw new IllegalArgumentException("maxConcurrentParts must be greater than zero");
+        }
+        this.maxConcurrentParts = maxConcurrentParts;
+    }
+
+    private synchronized ExecutorService getPartExecutor() {
+        if (partExecutor == null) {
+            // parts are bounded by each MultipartUpload's buffers, so the pool itself can grow freely
+            partExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, EXECUTOR_KEEP_ALIVE_MS,
+                TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>());
+        }
+        return partExecutor;
+    }
+
+    /**
+     * Returns the minimum time in milliseconds between two progress events delivered to an
+     * {@link UploadListener}.
+     *
+     * @return The progress interval in milliseconds
+     *
+     * @see UploadManager#setProgressInterval(long)
+     */
+    public long getProgressInterval() {
+        return progressInterval;
+    }
+
+    /**
+     * Sets the minimum time in milliseconds between two progress events delivered to an
+     * {@link UploadListener}. Progress is tracked for every buffer written to the network, and
+     * updates that arrive within this interval of the previous event are coalesced into the next
+     * one so the main thread isn't flooded. The final event for each file is always delivered.
+     * The default is 100 milliseconds.
+     *
+     * @param progressInterval The progress interval in milliseconds
+     *
+     * @see UploadManager#getProgressInterval()
+     * @see UploadProgressListener
+     */
+    public void setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Returns the {@link RetryPolicy} used to retry failed uploads.
+     *
+     * @return The {@link RetryPolicy}, or {@code null} if failed uploads aren't retried
+     *
+     * @see UploadManager#setRetryPolicy(RetryPolicy)
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets a {@link RetryPolicy} to retry failed uploads with. Each file is retried individually
+     * without affecting the other files in the same request.
+     *
+     * <p>
+     * Setting a retry policy also changes how failures are handled. Without one, the first file
+     * that fails cancels the rest of its request, and
+     * {@link UploadListener#onUploadComplete(String[])} is never called. With a retry policy, every
+     * file that still fails after its last attempt is reported to
+     * {@link UploadListener#onUploadFailed(Throwable, int)} while the other files keep uploading,
+     * and {@link UploadListener#onUploadComplete(String[])} is called at the end with a
+     * {@code null} url for each failed file.
+     * </p>
+     *
+     * <p>
+     * Parts of multipart uploads are always retried individually, using this policy if set or
+     * the default {@link RetryPolicy} otherwise.
+     * </p>
+     *
+     * @param retryPolicy The {@link RetryPolicy} to use, or {@code null} to cancel requests on
+     *                    the first failure
+     *
+     * @see UploadManager#getRetryPolicy()
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Returns the {@link UploadJournal} that upload requests made through this UploadManager are
+     * recorded in.
+     *
+     * @return The {@link UploadJournal}, or {@code null} if requests aren't recorded
+     *
+     * @see UploadManager#setJournal(UploadJournal)
+     */
+    public UploadJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Sets an {@link UploadJournal} to durably record the upload requests made through this
+     * UploadManager in, so that requests interrupted by the app's process being killed can be
+     * resumed on the next start with {@link UploadManager#resume(UploadJournal.PendingUpload, UploadListener)}.
+     *
+     * @param journal The {@link UploadJournal} to record requests in, or {@code null} to stop
+     *                recording requests
+     *
+     * @see UploadManager#getJournal()
+     */
+    public void setJournal(UploadJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Returns the {@link UploadMetricsListener} that receives performance metrics of the uploads
+     * made through this UploadManager.
+     *
+     * @return The {@link UploadMetricsListener}, or {@code null} if metrics aren't reported
+     *
+     * @see UploadManager#setMetricsListener(UploadMetricsListener)
+     */
+    public UploadMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets an {@link UploadMetricsListener} to receive performance metrics, such as latency,
+     * throughput, and retries, for every file and request uploaded through this UploadManager.
+     * Changing the listener only affects requests made afterwards.
+     *
+     * @param metricsListener The {@link UploadMetricsListener} to report metrics to, or
+     *                        {@code null} to stop reporting metrics
+     *
+     * @see UploadManager#getMetricsListener()
+     */
+    public void setMetricsListener(UploadMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Returns the {@link ConnectivityMonitor} this UploadManager adapts its uploads to.
+     *
+     * @return The {@link ConnectivityMonitor}, or {@code null} if uploads ignore the network
+     *
+     * @see UploadManager#setConnectivityMonitor(ConnectivityMonitor)
+     */
+    public synchronized ConnectivityMonitor getConnectivityMonitor() {
+        return connectivityMonitor;
+    }
+
+    /**
+     * Sets a {@link ConnectivityMonitor} to adapt uploads to the current network. With a monitor,
+     * this UploadManager:
+     *
+     * <ul>
+     * <li>Applies its {@link NetworkPolicy}, which can defer large files to unmetered networks
+     * and limit concurrency or extend timeouts on slow networks</li>
+     * <li>Waits for connectivity to return when a file fails while the device is offline, and
+     * then uploads it again without counting it as a failed attempt</li>
+     * </ul>
+     *
+     * <p>
+     * The UploadManager listens to the monitor until it is replaced, so pass {@code null} once the
+     * UploadManager is no longer used. Changing the monitor only affects requests made
+     * afterwards.
+     * </p>
+     *
+     * @param connectivityMonitor The {@link ConnectivityMonitor} to use, for example an
+     *                            {@link AndroidConnectivityMonitor}, or {@code null} to ignore
+     *                            the network
+     *
+     * @see UploadManager#getConnectivityMonitor()
+     * @see UploadManager#setNetworkPolicy(NetworkPolicy)
+     */
+    public void setConnectivityMonitor(ConnectivityMonitor connectivityMonitor) {
+        ConnectivityMonitor previous;
+        synchronized (this) {
+            previous = this.connectivityMonitor;
+            this.connectivityMonitor = connectivityMonitor;
+            networkGate = connectivityMonitor != null ? new NetworkGate(connectivityMonitor, networkPolicy) : null;
+            setNetworkType(connectivityMonitor != null ? connectivityMonitor.getNetworkType() : null);
+        }
+
+        if (previous != null) {
+            previous.removeListener(networkListener);
+        }
+        if (connectivityMonitor != null) {
+            connectivityMonitor.addListener(networkListener);
+        }
+    }
+
+    /**
+     * Returns the {@link NetworkPolicy} applied to the network reported by this UploadManager's
+     * {@link ConnectivityMonitor}.
+     *
+     * @return The {@link NetworkPolicy}
+     *
+     * @see UploadManager#setNetworkPolicy(NetworkPolicy)
+     */
+    public synchronized NetworkPolicy getNetworkPolicy() {
+        return networkPolicy;
+    }
+
+    /**
+     * Sets the {@link NetworkPolicy} to apply to the network reported by this UploadManager's
+     * {@link ConnectivityMonitor}. The policy has no effect without a monitor.
+     *
+     * @param networkPolicy The {@link NetworkPolicy} to use, must not be {@code null}
+     *
+     * @see UploadManager#getNetworkPolicy()
+     * @see UploadManager#setConnectivityMonitor(ConnectivityMonitor)
+     */
+    public void setNetworkPolicy(NetworkPolicy networkPolicy) {
+        if (networkPolicy == null) {
+            throw new IllegalArgumentException("networkPolicy cannot be null");
+        }
+
+        NetworkGate gate;
+        synchronized (this) {
+            this.networkPolicy = networkPolicy;
+            gate = networkGate;
+            resizeUploadExecutor();
+            discardHttpClient();
+        }
+        if (gate != null) {
+            gate.setPolicy(networkPolicy);
+        }
+    }
+
+    /**
+     * Applies the {@link NetworkPolicy} to a new network type, resizing the upload executor and
+     * discarding the HTTP client if its timeouts change. The adaptive limit starts over, since
+     * what it learned doesn't apply to the new network.
+     */
+    private synchronized void setNetworkType(ConnectivityMonitor.NetworkType networkType) {
+        int connectTimeout = getEffectiveTimeout(this.connectTimeout);
+        int responseTimeout = getEffectiveTimeout(this.responseTimeout);
+        if (concurrencyController != null && networkType != this.networkType) {
+            concurrencyController.reset();
+        }
+        this.networkType = networkType;
+        if (connectTimeout != getEffectiveTimeout(this.connectTimeout)
+            || responseTimeout != getEffectiveTimeout(this.responseTimeout)) {
+            discardHttpClient();
+        }
+        resizeUploadExecutor();
+    }
+
+    /**
+     * Returns the {@link UploadIndex} used to skip uploading files that were already uploaded.
+     *
+     * @return The {@link UploadIndex}, or {@code null} if every file is uploaded
+     *
+     * @see UploadManager#setUploadIndex(UploadIndex)
+     */
+    public UploadIndex getUploadIndex() {
+        return uploadIndex;
+    }
+
+    /**
+     * Sets an {@link UploadIndex} to record the content digest of every uploaded file in. Files
+     * whose content is already in the index are not uploaded again, and the url they were uploaded
+     * to before is passed to {@link UploadListener#onUploadComplete(String[])} instead.
+     *
+     * @param uploadIndex The {@link UploadIndex} to use, or {@code null} to always upload every
+     *                    file
+     *
+     * @see UploadManager#getUploadIndex()
+     */
+    public void setUploadIndex(UploadIndex uploadIndex) {
+        this.uploadIndex = uploadIndex;
+    }
+
+    /**
+     * Returns whether uploaded files are checked for corruption in transit.
+     *
+     * @return {@code true} if integrity checking is enabled
+     *
+     * @see UploadManager#setIntegrityCheckEnabled(boolean)
+     */
+    public boolean isIntegrityCheckEnabled() {
+        return integrityCheckEnabled;
+    }
+
+    /**
+     * Sets whether to check uploaded files for corruption in transit. The MD5 digest of each file
+     * is computed while it streams into the request, so the file is still only read once, and is
+     * compared with the ETag returned by S3. A file whose ETag doesn't match fails with an
+     * {@link IntegrityException}, and is retried if there is a {@link RetryPolicy}. Such failures
+     * are not mistaken for network errors, so they don't lower an adaptive concurrency limit. Multipart
+     * uploads are checked part by part, so only the affected part is uploaded again.
+     *
+     * <p>
+     * S3 only returns the MD5 digest as the ETag for objects that aren't encrypted with SSE-KMS or
+     * SSE-C. Files whose ETag is something else are not rejected, but are not reported as
+     * verified by {@link FileUploadMetrics#isIntegrityVerified()} either. The default is
+     * {@code false}.
+     * </p>
+     *
+     * @param integrityCheckEnabled {@code true} to check uploaded files
+     *
+     * @see UploadManager#isIntegrityCheckEnabled()
+     * @see UploadManager#setSha256Enabled(boolean)
+     */
+    public void setIntegrityCheckEnabled(boolean integrityCheckEnabled) {
+        this.integrityCheckEnabled = integrityCheckEnabled;
+    }
+
+    /**
+     * Returns whether the SHA-256 digest of uploaded files is computed.
+     *
+     * @return {@code true} if SHA-256 digests are computed
+     *
+     * @see UploadManager#setSha256Enabled(boolean)
+     */
+    public boolean isSha256Enabled() {
+        return sha256Enabled;
+    }
+
+    /**
+     * Sets whether to also compute the SHA-256 digest of files in the same pass as their MD5
+     * digest when integrity checking is enabled, for example to verify them on the server later.
+     * The digest is reported by {@link FileUploadMetrics#getSha256()}. The default is
+     * {@code false}.
+     *
+     * @param sha256Enabled {@code true} to compute SHA-256 digests
+     *
+     * @see UploadManager#isSha256Enabled()
+     * @see UploadManager#setIntegrityCheckEnabled(boolean)
+     */
+    public void setSha256Enabled(boolean sha256Enabled) {
+        this.sha256Enabled = sha256Enabled;
+    }
+
+    /**
+     * Resumes an upload request that was interrupted before it finished. Only the files that were
+     * not uploaded yet will be sent, and the urls passed to
+     * {@link UploadListener#onUploadComplete(String[])} will include those of the files uploaded
+     * before the interruption.
+     *
+     * @param pendingUpload A {@link UploadJournal.PendingUpload} returned by the
+     *                      {@link UploadJournal} of this UploadManager
+     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
+     *                 and progress events
+     * @return An {@link UploadHandle} for cancelling, pausing, and resuming the upload
+     *
+     * @see UploadJournal#getPendingUploads()
+     */
+    public UploadHandle resume(UploadJournal.PendingUpload pendingUpload, UploadListener listener) {
+        if (journal == null) {
+            throw new IllegalStateException("No UploadJournal has been set on this UploadManager");
+        }
+        journal.recordResumed(pendingUpload);
+
+        UploadTask uploadTask = createUploadTask(listener);
+        uploadTask.uploadId = pendingUpload.getId();
+        uploadTask.acl = pendingUpload.getAcl();
+        uploadTask.keys = pendingUpload.getKeys();
+        uploadTask.completedUrls = pendingUpload.getUrls();
+        return start(uploadTask, UriUploadSource.fromUris(pendingUpload.getUris()));
+    }
+
+    private UploadTask createUploadTask(UploadListener listener) {
+        UploadTask uploadTask = new UploadTask(context, credentialsProvider, getUploadExecutor(), listener);
+        uploadTask.handle.setTask(uploadTask);
+        uploadTask.handle.setScheduler(getUploadExecutor());
+        uploadTask.priorityRule = priorityRule;
+        uploadTask.client = acquireHttpClient();
+        uploadTask.progressInterval = progressInterval;
+        uploadTask.retryPolicy = retryPolicy;
+        uploadTask.uploadIndex = uploadIndex;
+        uploadTask.integrityCheck = integrityCheckEnabled;
+        uploadTask.sha256 = sha256Enabled;
+        uploadTask.network = networkGate;
+        uploadTask.metricsListener = metricsListener;
+        uploadTask.concurrency = concurrencyController;
+        if (journal != null) {
+            uploadTask.journal = journal;
+            uploadTask.uploadId = UUID.randomUUID().toString();
+        }
+        if (multipartThreshold >= 0 && credentialsProvider instanceof S3MultipartCredentialsProvider
+            && ((S3MultipartCredentialsProvider) credentialsProvider).isMultipartSupported()) {
+            uploadTask.multipartThreshold = multipartThreshold;
+            uploadTask.multipartPartSize = multipartPartSize;
+            uploadTask.maxConcurrentParts = maxConcurrentParts;
+            uploadTask.partExecutor = getPartExecutor();
+        }
+        return uploadTask;
+    }
+
+    private UploadHandle start(UploadTask uploadTask, UploadSource... sources) {
+        uploadTask.executeOnExecutor(getTaskExecutor(), sources);
+        return uploadTask.handle;
+    }
+
+    /**
+     * Uploads an array of images to S3 in the background.
+     *
+     * @param imageUris An array {@link Uri}s representing the images to be uploaded
+     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
+     *                 and progress events
+     * @return An {@link UploadHandle} for cancelling, pausing, and resuming the upload
+     */
+    public UploadHandle uploadImages(Uri[] imageUris, UploadListener listener) {
+        UploadTask uploadTask = createUploadTask(listener);
+        return start(uploadTask, UriUploadSource.fromUris(imageUris));
+    }
+
+    /**
+     * Uploads an array of images to S3 in the background using the given
+     * {@link SuffixRule} to configure the uploaded S3 keys.
+     *
+     * @param imageUris An array {@link Uri}s representing the images to be uploaded
+     * @param suffixRule A {@link SuffixRule} that will be used to configure the uploaded S3 key for
+     *                   each file
+     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
+     *                 and progress events
+     * @return An {@link UploadHandle} for cancelling, pausing, and resuming the upload
+     */
+    public UploadHandle uploadImages(Uri[] imageUris, SuffixRule suffixRule, UploadListener listener) {
+        UploadTask uploadTask = createUploadTask(listener);
+        uploadTask.suffixRule = suffixRule;
+        return start(uploadTask, UriUploadSource.fromUris(imageUris));
+    }
+
+    /**
+     * Uploads an array of images to S3 in the background using the given
+     * {@link SuffixRule} to configure the uploaded S3 keys with the ACL parameter (private/public).
+     *
+     * @param imageUris An array {@link Uri}s representing the images to be uploaded
+     * @param suffixRule A {@link SuffixRule} that will be used to configure the uploaded S3 key for
+     *                   each file
+     * @param acl A string {@link String}s representing the ACL
+     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
+     *                 and progress events
+     * @return An {@link UploadHandle} for cancelling, pausing, and resuming the upload
+     */
+    public UploadHandle uploadImages(Uri[] imageUris, SuffixRule suffixRule, String acl, UploadListener listener) {
+        UploadTask uploadTask = createUploadTask(listener);
+        uploadTask.suffixRule = suffixRule;
+        uploadTask.acl = acl;
+        return start(uploadTask, UriUploadSource.fromUris(imageUris));
+    }
+
+    /**
+     * Uploads a media object to S3 in the background.
+     *
+     * @param mediaUri A {@link Uri} representing the media to be uploaded
+     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
+     *                 and progress events
+     * @return An {@link UploadHandle} for cancelling, pausing, and resuming the upload
+     */
+    public UploadHandle upload(Uri mediaUri, UploadListener listener) {
+        UploadTask uploadTask = createUploadTask(listener);
+        return start(uploadTask, UriUploadSource.fromUris(mediaUri));
+    }
+
+    /**
+     * Uploads a media object to S3 in the background using the given {@link SuffixRule} to configure the
+     * uploaded S3 key.
+     *
+     * @param mediaUri A {@link Uri} representing the media to be uploaded
+     * @param suffixRule A {@link SuffixRule} that will be used to configure the uploaded S3 key for
+     *                   this file
+     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
+     *                 and progress events
+     * @return An {@link UploadHandle} for cancelling, pausing, and resuming the upload
+     */
+    public UploadHandle upload(Uri mediaUri, SuffixRule suffixRule, UploadListener listener) {
+        UploadTask uploadTask = createUploadTask(listener);
+        uploadTask.suffixRule = suffixRule;
+        return start(uploadTask, UriUploadSource.fromUris(mediaUri));
+    }
+
+    /**
+     * Uploads a media object to S3 in the background using the given {@link SuffixRule} to configure the
+     * uploaded S3 key with the ACL parameter (private/public)
+     *
+     * @param mediaUri A {@link Uri} representing the media to be uploaded
+     * @param suffixRule A {@link SuffixRule} that will be used to configure the uploaded S3 key for
+     *                   this file
+     * @param acl A string {@link String}s representing the ACL
+     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
+     *                 and progress events
+     * @return An {@link UploadHandle} for cancelling, pausing, and resuming the upload
+     */
+    public UploadHandle upload(Uri mediaUri, SuffixRule suffixRule, String acl, UploadListener listener) {
+        UploadTask uploadTask = createUploadTask(listener);
+        uploadTask.suffixRule = suffixRule;
+        uploadTask.acl = acl;
+        return start(uploadTask, UriUploadSource.fromUris(mediaUri));
+    }
+
+    /**
+     * Scales an image to every size enabled in the {@link ImageResizeConfig} of {@code resizer}
+     * and uploads the scaled copies to S3 in the background, without writing them to temporary
+     * files. Unless single decoding is disabled in the config, the image is decoded once, and the
+     * copies are encoded into memory in parallel on the {@link ImageResizer}'s executor. Each copy
+     * starts uploading with an exact Content-Length as soon as it is encoded, while the others are
+     * still being encoded, and its bytes are released once its upload finished.
+     *
+     * <p>
+     * The urls passed to {@link UploadListener#onUploadComplete(String[])} are in the order large,
+     * medium, small, omitting any size disabled in the config. By default the S3 key of each copy
+     * ends with the name of its size: "large", "medium", or "small". Up to
+     * {@link UploadManager#getMaxConcurrentUploads()} copies are uploaded at once.
+     * </p>
+     *
+     * <p>
+     * Since the scaled copies only exist while they are being uploaded, these requests are not
+     * recorded in the {@link UploadJournal}. A copy whose upload is retried or paused is sent
+     * again from its encoded bytes, without scaling the image again.
+     * </p>
+     *
+     * @param imageUri A {@link Uri} representing the image to be resized and uploaded
+     * @param resizer The {@link ImageResizer} to scale the image with
+     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
+     *                 and progress events
+     * @return An {@link UploadHandle} for cancelling, pausing, and resuming the upload
+     *
+     * @see ImageResizer#encodeImages(Uri, ImageResizeConfig.Dimension[], ImageResizer.EncodeCallback)
+     */
+    public UploadHandle uploadResizedImage(Uri imageUri, ImageResizer resizer, UploadListener listener) {
+        return uploadResizedImage(imageUri, resizer, null, DEFAULT_ACL, listener);
+    }
+
+    /**
+     * Scales an image to every size enabled in the {@link ImageResizeConfig} of {@code resizer}
+     * and uploads the scaled copies to S3 in the background using the given {@link SuffixRule} to
+     * configure the uploaded S3 keys.
+     *
+     * @param imageUri A {@link Uri} representing the image to be resized and uploaded
+     * @param resizer The {@link ImageResizer} to scale the image with
+     * @param suffixRule A {@link SuffixRule} that will be used to configure the uploaded S3 key for
+     *                   each scaled copy
+     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
+     *                 and progress events
+     * @return An {@link UploadHandle} for cancelling, pausing, and resuming the upload
+     *
+     * @see UploadManager#uploadResizedImage(Uri, ImageResizer, UploadListener)
+     */
+    public UploadHandle uploadResizedImage(Uri imageUri, ImageResizer resizer, SuffixRule suffixRule,
+                                           UploadListener listener) {
+        return uploadResizedImage(imageUri, resizer, suffixRule, DEFAULT_ACL, listener);
+    }
+
+    /**
+     * Scales an image to every size enabled in the {@link ImageResizeConfig} of {@code resizer}
+     * and uploads the scaled copies to S3 in the background using the given {@link SuffixRule} to
+     * configure the uploaded S3 keys with the ACL parameter (private/public).
+     *
+     * @param imageUri A {@link Uri} representing the image to be resized and uploaded
+     * @param resizer The {@link ImageResizer} to scale the image with
+     * @param suffixRule A {@link SuffixRule} that will be used to configure the uploaded S3 key for
+     *                   each scaled copy, or {@code null} to use the names of the sizes
+     * @param acl A string {@link String}s representing the ACL
+     * @param listener An {@link UploadListener} that will be notified of upload completion, error,
+     *                 and progress events
+     * @return An {@link UploadHandle} for cancelling, pausing, and resuming the upload
+     *
+     * @see UploadManager#uploadResizedImage(Uri, ImageResizer, UploadListener)
+     */
+    public UploadHandle uploadResizedImage(Uri imageUri, ImageResizer resizer, SuffixRule suffixRule,
+                                           String acl, UploadListener listener) {
+        ImageResizeConfig config = resizer.getConfig();
+
+        List<ImageResizeConfig.Dimension> dimensions = new ArrayList<>(3);
+        List<String> suffixes = new ArrayList<>(3);
+        if (config.isLargeOutputEnabled()) {
+            dimensions.add(config.getLargeDimension());
+            suffixes.add("large");
+        }
+        if (config.isMediumOutputEnabled()) {
+            dimensions.add(config.getMediumDimension());
+            suffixes.add("medium");
+        }
+        if (config.isSmallOutputEnabled()) {
+            dimensions.add(config.getSmallDimension());
+            suffixes.add("small");
+        }
+
+        UploadTask uploadTask = createUploadTask(listener);
+        uploadTask.journal = null;
+        uploadTask.suffixRule = suffixRule != null
+            ? suffixRule : new IndexedSuffixRule(suffixes.toArray(new String[suffixes.size()]));
+        uploadTask.acl = acl;
+        return start(uploadTask, ResizedImageSource.create(resizer, imageUri,
+            dimensions.toArray(new ImageResizeConfig.Dimension[dimensions.size()])));
+    }
+
+    /**
+     * Uploads a set of variants of the same content, such as the sizes of an image produced by an
+     * {@link ImageResizer}, to S3 in the background as a single unit. All variants share one set
+     * of credentials, retrieved with a single call to the {@link S3CredentialsProvider} even if it
+     * implements {@link S3BatchCredentialsProvider}. The variants are uploaded concurrently within
+     * the same limits as any other upload, {@link UploadManager#getMaxConcurrentUploads()} or those
+     * of the {@link NetworkPolicy} and {@link AdaptiveConcurrencyPolicy}, and are scheduled
+     * together, so uploads of other requests of equal priority don't run in between them. The S3
+     * key of each variant ends with its name.
+     *
+     * <p>
+     * The set only succeeds as a whole: as soon as a variant fails, after any retries allowed by
+     * the {@link RetryPolicy}, the uploads of the other variants are aborted, including any
+     * multipart uploads, and {@link VariantSetListener#onVariantsFailed(Throwable, String)} is
+     * called once, with no partial result.
+     * </p>
+     *
+     * @param variants The {@link Uri} of each variant by its name, in the order they should be
+     *                 uploaded, for example {@code "large"}, {@code "medium"}, and {@code "small"}
+     * @param listener A {@link VariantSetListener} that will be notified of upload completion,
+     *                 error, and progress events
+     * @return An {@link UploadHandle} for cancelling, pausing, and resuming the upload
+     */
+    public UploadHandle uploadVariants(Map<String, Uri> variants, VariantSetListener listener) {
+        return uploadVariants(variants, DEFAULT_ACL, listener);
+    }
+
+    /**
+     * Uploads a set of variants of the same content to S3 in the background as a single unit with
+     * the ACL parameter (private/public).
+     *
+     * @param variants The {@link Uri} of each variant by its name, in the order they should be
+     *                 uploaded
+     * @param acl A string {@link String}s representing the ACL
+     * @param listener A {@link VariantSetListener} that will be notified of upload completion,
+     *                 error, and progress events
+     * @return An {@link UploadHandle} for cancelling, pausing, and resuming the upload
+     *
+     * @see UploadManager#uploadVariants(Map, VariantSetListener)
+     */
+    public UploadHandle uploadVariants(Map<String, Uri> variants, String acl, VariantSetListener listener) {
+        String[] names = new String[variants.size()];
+        Uri[] uris = new Uri[variants.size()];
+        int i = 0;
+        for (Map.Entry<String, Uri> variant : variants.entrySet()) {
+            if (variant.getKey() == null || variant.getValue() == null) {
+                throw new IllegalArgumentException("Variant names and Uris cannot be null");
+            }
+            names[i] = variant.getKey();
+            uris[i] = variant.getValue();
+            i++;
+        }
+
+        UploadTask uploadTask = createUploadTask(new VariantSetAdapter(names, listener));
+        uploadTask.suffixRule = new IndexedSuffixRule(names);
+        uploadTask.acl = acl;
+        uploadTask.failFast = true;
+        uploadTask.sharedCredentials = true;
+        uploadTask.grouped = true;
+        return start(uploadTask, UriUploadSource.fromUris(uris));
+    }
+
+    /**
+     * Adapts a {@link VariantSetListener} to the {@link UploadListener} of the task uploading the
+     * variants, mapping file indices to variant names.
+     */
+    private static class VariantSetAdapter implements UploadListener {
+        private final String[] names;
+        private final VariantSetListener listener;
+
+        VariantSetAdapter(String[] names, VariantSetListener listener) {
+            this.names = names;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onProgress(int progress) {
+            if (listener != null) {
+                listener.onProgress(progress);
+            }
+        }
+
+        @Override
+        public void onUploadComplete(String[] urls) {
+            if (listener != null) {
+                Map<String, String> result = new LinkedHashMap<>();
+                for (int i = 0; i < names.length; i++) {
+                    result.put(names[i], urls[i]);
+                }
+                listener.onVariantsUploaded(result);
+            }
+        }
+
+        @Override
+        public void onUploadFailed(Throwable error, int failureIndex) {
+            if (listener != null) {
+                listener.onVariantsFailed(error, names[failureIndex]);
+            }
+        }
+    }
+
+
+    /**
+     * Implementation of {@link AsyncTask} that uploads an arbitrary number of
+     * {@link UploadSource}s to S3. The configuration specifying how the file should be uploaded (bucket name, key,
+     * authentication, etc) is determined by an {@link S3CredentialsProvider} passed in to the
+     * task.
+     *
+     * <p>
+     * The individual files are uploaded on an {@link UploadScheduler} shared by the owning
+     * {@link UploadManager}, which bounds how many of them are in flight at once and orders the
+     * waiting files of all requests by priority. A scheduler with a single thread uploads the
+     * files in series. All files are sent through the same
+     * {@link SyncHttpClient}, which is safe to share between threads and keeps a pool of reusable
+     * connections.
+     * </p>
+     *
+     * <p>
+     * By default, the task uses the {@link UploadManager#SUFFIX_INCREMENTAL} instance as a
+     * {@link SuffixRule} for modifying the S3 keys for successive uploads. This can be configured
+     * with a different {@link SuffixRule} if custom naming conventions are required.
+     * </p>
+     *
+     * <p>
+     * If a single upload fails, the task will be cancelled and the remaining files will not be
+     * uploaded, unless a {@link RetryPolicy} has been provided. In that case failed files are
+     * retried and reported individually while the remaining files continue uploading. Tasks
+     * uploading a variant set are always cancelled by the first file that still fails after its
+     * retries.
+     * </p>
+     */
+    private static class UploadTask extends AsyncTask<UploadSource, Long, String[]> {
+        private WeakReference<Context> context;
+        private S3CredentialsProvider credentialsProvider;
+        private UploadScheduler executor;
+        private UploadHttpClient client;
+        private UploadListener listener;
+        private SuffixRule suffixRule = SUFFIX_INCREMENTAL;
+        private PriorityRule priorityRule;
+        private String acl = DEFAULT_ACL;
+
+        private long multipartThreshold = MULTIPART_DISABLED;
+        private long multipartPartSize;
+        private int maxConcurrentParts;
+        private ExecutorService partExecutor;
+        private long progressInterval = DEFAULT_PROGRESS_INTERVAL_MS;
+        private UploadJournal journal;
+        private String uploadId;
+        private String[] keys;
+        private String[] completedUrls;
+        private RetryPolicy retryPolicy;
+        private UploadIndex uploadIndex;
+        private boolean integrityCheck;
+        private boolean sha256;
+        private NetworkGate network;
+        private UploadMetricsListener metricsListener;
+        private ConcurrencyController concurrency;
+        private boolean failFast;
+        private boolean sharedCredentials;
+        private boolean grouped;
+
+        private final UploadHandle handle = new UploadHandle();
+        private final AtomicBoolean failed = new AtomicBoolean();
+        private long[] lengths;
+        private UploadProgress progress;
+        private Throwable[] errors;
+        private long startTime;
+        private long credentialsTime;
+        private final List<FileUploadMetrics> fileMetrics = Collections.synchronizedList(new ArrayList<FileUploadMetrics>());
+
+        /**
+         * Creates a new UploadTask instance. The instance will use {@code credentialsProvider}
+         * for configuring it's upload parameters.
+         *
+         * @param context The current {@link Context}
+         * @param credentialsProvider An {@link S3CredentialsProvider} that will provide
+         *                            authentication and configuration information for each upload
+         * @param executor The {@link UploadScheduler} to run the individual file uploads on
+         * @param listener A {@link UploadListener} to be notified of completion, error, and
+         *                 progress events
+         */
+        public UploadTask(Context context, S3CredentialsProvider credentialsProvider,
+                          UploadScheduler executor, UploadListener listener) {
+            this.context = new WeakReference<>(context);
+            this.credentialsProvider = credentialsProvider;
+            this.executor = executor;
+            this.listener = listener;
+        }
+
+        @Override
+        protected String[] doInBackground(UploadSource... sources) {
+            handle.setStatus(UploadHandle.Status.RUNNING);
+            startTime = SystemClock.uptimeMillis();
+            errors = new Throwable[sources.length];
+
+            final S3Credentials[] credentials = getCredentials(sources.length);
+            credentialsTime = SystemClock.uptimeMillis() - startTime;
+            if (credentials == null) {
+                failRequest(new IOException("Failed retrieving S3 credentials from provider"), sources.length);
+                return null;
+            }
+            if (sources.length > 1 && credentials[0] == credentials[1] && credentials[0].getUploadUrl() != null) {
+                failRequest(new IllegalStateException("A presigned upload url cannot be shared by multiple files"),
+                    sources.length);
+                return null;
+            }
+
+            Context ctx = context.get();
+            lengths = new long[sources.length];
+            for (int i = 0; i < sources.length; i++) {
+                // the length of a lazy source is only known once its upload starts
+                lengths[i] = ctx != null && sources[i] != null && !(sources[i] instanceof LazyUploadSource)
+                    ? sources[i].getLength(ctx) : -1;
+            }
+            progress = new UploadProgress(lengths, progressInterval, new UploadProgress.Callback() {
+                @Override
+                public void onProgress(long bytesUploaded, long totalBytes) {
+                    publishProgress(bytesUploaded, totalBytes);
+                }
+            });
+
+            if (keys == null) {
+                keys = new String[sources.length];
+                for (int i = 0; i < sources.length; i++) {
+                    keys[i] = ctx != null && sources[i] != null ? createKey(ctx, credentials[i], sources[i], i) : null;
+                }
+                if (journal != null) {
+                    Uri[] uris = new Uri[sources.length];
+                    for (int i = 0; i < sources.length; i++) {
+                        uris[i] = sources[i] != null ? sources[i].getUri() : null;
+                    }
+                    journal.recordStarted(uploadId, uris, keys, acl);
+                }
+            }
+
+            final String[] result = new String[sources.length];
+            List<Future<?>> uploads = new ArrayList<>(sources.length);
+            List<Integer> pending = new ArrayList<>(sources.length);
+
+            for (int i : getUploadOrder(sources)) {
+                if (isCancelled()) {
+                    break;
+                }
+
+                if (sources[i] == null) {
+                    fail(new IllegalArgumentException("Uri cannot be null"), i);
+                    continue;
+                }
+
+                if (completedUrls != null && completedUrls[i] != null) {
+                    // uploaded before this request was interrupted
+                    result[i] = completedUrls[i];
+                    progress.complete(i);
+                    publishFileUploaded(i, completedUrls[i]);
+                    continue;
+                }
+
+                pending.add(i);
+            }
+
+            while (!isCancelled()) {
+                int generation = network != null ? network.getGeneration() : 0;
+                List<Runnable> allowed = new ArrayList<>(pending.size());
+                for (Iterator<Integer> it = pending.iterator(); it.hasNext(); ) {
+                    int index = it.next();
+                    if (network == null || network.allows(lengths[index])) {
+                        allowed.add(createUpload(credentials[index], sources[index], index, result));
+                        it.remove();
+                    }
+                }
+                if (grouped) {
+                    // the files are only useful together, so other requests don't run in between them
+                    uploads.addAll(executor.submitAll(handle, allowed));
+                } else {
+                    for (Runnable upload : allowed) {
+                        uploads.add(executor.submit(handle, upload));
+                    }
+                }
+
+                // files deferred by the network policy are submitted once the network changes
+                if (pending.isEmpty() || !network.awaitChange(generation, handle)) {
+                    break;
+                }
+            }
+
+            for (Future<?> upload : uploads) {
+                try {
+                    upload.get();
+                } catch (InterruptedException e) {
+                    // the task was cancelled, uploads that haven't started yet can be dropped
+                    break;
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            if (isCancelled()) {
+                for (Future<?> upload : uploads) {
+                    upload.cancel(false);
+                }
+            }
+
+            if (journal != null) {
+                journal.recordFinished(uploadId);
+            }
+
+            publishBatchMetrics(sources.length, result);
+            return result;
+        }
+
+        /**
+         * Fails the whole request before any of its files started uploading. A resumed request is
+         * marked as finished in the journal, like any other request that failed while the process
+         * was alive, so it isn't offered for resuming again.
+         */
+        private void failRequest(Throwable error, int fileCount) {
+            publishFailure(error, 0);
+            handle.setStatus(UploadHandle.Status.FAILED);
+            if (journal != null && keys != null) {
+                journal.recordFinished(uploadId);
+            }
+            cancel(true);
+            publishBatchMetrics(fileCount, null);
+        }
+
+        private Runnable createUpload(final S3Credentials credentials, final UploadSource source,
+                                      final int index, final String[] result) {
+            final long submitTime = SystemClock.uptimeMillis();
+            return new Runnable() {
+                @Override
+                public void run() {
+                    // the file holds on to the client itself, since it may outlive a cancelled task
+                    if (!isCancelled() && client.acquire()) {
+                        try {
+                            long start = SystemClock.uptimeMillis();
+                            FileUploadMetrics metrics = new FileUploadMetrics(index, credentialsTime, start - submitTime);
+                            uploadFile(credentials, source, index, result, metrics);
+                            metrics.duration = SystemClock.uptimeMillis() - start;
+                            metrics.url = result[index];
+                            metrics.error = errors[index];
+                            publishFileMetrics(metrics);
+                        } finally {
+                            client.release();
+                        }
+                    }
+                }
+            };
+        }
+
+        /**
+         * Returns the indices of {@code sources} in the order their uploads should be scheduled:
+         * by descending priority if this task has a {@link PriorityRule}, otherwise in order.
+         */
+        private Integer[] getUploadOrder(final UploadSource[] sources) {
+            Integer[] order = new Integer[sources.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            if (priorityRule != null) {
+                final int[] priorities = new int[sources.length];
+                for (int i = 0; i < sources.length; i++) {
+                    priorities[i] = sources[i] != null ? priorityRule.getPriority(sources[i].getUri(), i) : 0;
+                }
+                // the sort is stable, so files of equal priority keep their order
+                Arrays.sort(order, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer a, Integer b) {
+                        return priorities[b] < priorities[a] ? -1 : (priorities[b] == priorities[a] ? 0 : 1);
+                    }
+                });
+            }
+            return order;
+        }
+
+        /**
+         * Retrieves credentials for each of {@code count} files with a single request to the
+         * credentials provider, returning {@code null} if the request failed. Unless the files
+         * must share credentials, a batch provider is asked for credentials for every file.
+         */
+        private S3Credentials[] getCredentials(int count) {
+            S3Credentials[] credentials;
+            if (count > 1 && !sharedCredentials && credentialsProvider instanceof S3BatchCredentialsProvider) {
+                credentials = ((S3BatchCredentialsProvider) credentialsProvider).getCredentials(count);
+                if (credentials == null || credentials.length != count) {
+                    return null;
+                }
+                for (S3Credentials c : credentials) {
+                    if (c == null) {
+                        return null;
+                    }
+                }
+            } else {
+                S3Credentials shared = credentialsProvider.getCredentials();
+                if (shared == null) {
+                    return null;
+                }
+                credentials = new S3Credentials[count];
+                Arrays.fill(credentials, shared);
+            }
+            return credentials;
+        }
+
+        private void uploadFile(S3Credentials credentials, UploadSource source, int index, String[] result,
+                                FileUploadMetrics metrics) {
+            Context ctx = context.get();
+            if (ctx == null) {
+                fail(new IllegalStateException("Context is dead"), index);
+                return;
+            }
+
+            if (source instanceof LazyUploadSource) {
+                LazyUploadSource lazy = (LazyUploadSource) source;
+                try {
+                    long length = lazy.getLength(ctx);
+                    if (length < 0) {
+                        fail(new IOException("Failed preparing " + source.getUri()), index);
+                        return;
+                    }
+                    lengths[index] = length;
+                    progress.setLength(index, length);
+                    uploadFile(ctx, credentials, source, length, index, result, metrics);
+                } finally {
+                    lazy.release();
+                }
+                return;
+            }
+
+            if (lengths[index] >= 0) {
+                uploadFile(ctx, credentials, source, lengths[index], index, result, metrics);
+                return;
+            }
+
+            // S3 needs the length of every request up front and doesn't accept chunked uploads, so
+            // content of unknown length is copied to a temporary file instead of into memory
+            File spooled;
+            try {
+                spooled = spool(ctx, source);
+            } catch (IOException e) {
+                e.printStackTrace();
+                fail(e, index);
+                return;
+            }
+
+            try {
+                uploadFile(ctx, credentials, new UriUploadSource(Uri.fromFile(spooled)), spooled.length(), index,
+                    result, metrics);
+            } finally {
+                if (!spooled.delete()) {
+                    spooled.deleteOnExit();
+                }
+            }
+        }
+
+        /**
+         * Copies the content of {@code source} to a new temporary file in the app's cache
+         * directory, which the caller is responsible for deleting.
+         */
+        private File spool(Context ctx, UploadSource source) throws IOException {
+            File file = File.createTempFile("upload", null, ctx.getCacheDir());
+            InputStream in = null;
+            OutputStream out = null;
+            try {
+                in = source.open(ctx);
+                if (in == null) {
+                    throw new IOException("Failed opening " + source.getUri());
+                }
+                out = new FileOutputStream(file);
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+                throw e;
+            } finally {
+                if (in != null) {
+                    closeQuietly(in);
+                }
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            return file;
+        }
+
+        /**
+         * Uploads a file of known {@code length}, retrying it according to the
+         * {@link RetryPolicy}.
+         */
+        private void uploadFile(Context ctx, S3Credentials credentials, UploadSource source, long length, int index,
+                                String[] result, FileUploadMetrics metrics) {
+            String key = keys[index];
+            boolean multipart = multipartThreshold >= 0 && length >= multipartThreshold;
+            boolean indexed = uploadIndex != null && !multipart && length <= uploadIndex.getMaxFileSize();
+            String digest = null;
+
+            int attempt = 1;
+            while (!isCancelled() && handle.awaitResumed()) {
+                int pauseCount = handle.getPauseCount();
+
+                InputStream in = null;
+                try {
+                    in = source.open(ctx);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    fail(e, index);
+                    return;
+                }
+
+                if (in == null) {
+                    fail(new IOException("Failed opening " + source.getUri()), index);
+                    return;
+                }
+
+                if (indexed) {
+                    // digest the file while reading it, and upload it from memory if it's new
+                    indexed = false;
+                    DigestedStream digested;
+                    try {
+                        digested = DigestedStream.read(in, uploadIndex.getMaxFileSize());
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        closeQuietly(in);
+                        fail(e, index);
+                        return;
+                    }
+
+                    digest = digested.getDigest();
+                    if (digest != null) {
+                        // the whole file is in memory now
+                        length = digested.getLength();
+                        closeQuietly(in);
+                        String url = uploadIndex.getUrl(digest, acl);
+                        if (url != null) {
+                            metrics.deduplicated = true;
+                            onFileUploaded(index, url, result);
+                            return;
+                        }
+                    }
+                    in = digested.getInputStream();
+                }
+
+                ChecksumInputStream checksum = null;
+                if (integrityCheck) {
+                    try {
+                        checksum = new ChecksumInputStream(in, sha256);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        closeQuietly(in);
+                        fail(e, index);
+                        return;
+                    }
+                    in = checksum;
+                }
+
+                if (multipart) {
+                    // parts are retried individually, so the file as a whole is only attempted once
+                    try {
+                        uploadMultipart(credentials, in, length, key, index, result, metrics, checksum);
+                    } finally {
+                        closeQuietly(in);
+                    }
+                    return;
+                }
+
+                SyncResponseHandler response;
+                try {
+                    response = credentials.getUploadUrl() != null
+                        ? uploadPresigned(credentials, in, length, index, metrics)
+                        : uploadSingle(credentials, in, length, key, index, metrics);
+                } finally {
+                    closeQuietly(in);
+                }
+                metrics.statusCode = response.getStatusCode();
+                metrics.retryCount = attempt - 1;
+                IntegrityException integrityError = checksum != null && response.isSuccessful()
+                    ? verifyIntegrity(response, checksum, metrics) : null;
+
+                if (response.isSuccessful() && integrityError == null) {
+                    String url = credentials.getUploadUrl() != null
+                        ? stripQuery(credentials.getUploadUrl())
+                        : String.format(S3_URL_FORMAT, credentials.getBucket()) + "/" + key;
+                    if (digest != null) {
+                        uploadIndex.put(digest, acl, url);
+                    }
+                    if (concurrency != null) {
+                        concurrency.onResult(metrics.bytes, false);
+                    }
+                    onFileUploaded(index, url, result);
+                    return;
+                }
+
+                Throwable error;
+                boolean retryable;
+                if (integrityError != null) {
+                    // the request itself succeeded, so a corrupted upload says nothing about
+                    // congestion, and is always worth another attempt
+                    error = integrityError;
+                    retryable = true;
+                } else {
+                    if (handle.isAborted()) {
+                        // aborted because another file failed the request, which was already reported
+                        return;
+                    }
+
+                    if (handle.getPauseCount() != pauseCount) {
+                        // aborted by a pause, start over once resumed without counting it as an attempt
+                        progress.reset(index);
+                        continue;
+                    }
+
+                    if (network != null && network.getNetworkType() == ConnectivityMonitor.NetworkType.NONE) {
+                        // lost connectivity, start over once it returns without counting it as an attempt
+                        progress.reset(index);
+                        if (!network.awaitConnected(handle)) {
+                            return;
+                        }
+                        continue;
+                    }
+
+                    if (concurrency != null && isCongestion(response.getStatusCode())) {
+                        concurrency.onResult(metrics.bytes, true);
+                    }
+
+                    error = response.getError();
+                    retryable = retryPolicy != null && retryPolicy.isRetryable(response.getStatusCode(), error);
+                }
+
+                if (retryPolicy == null || attempt >= retryPolicy.getMaxAttempts() || !retryable) {
+                    error.printStackTrace();
+                    fail(error, index);
+                    return;
+                }
+
+                progress.reset(index);
+                try {
+                    Thread.sleep(retryPolicy.getDelay(++attempt));
+                } catch (InterruptedException e) {
+                    fail(error, index);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns whether a failed upload with {@code statusCode} indicates that too much is being
+         * sent at once: a timeout or dropped connection, a 408 or 429 response, or a server error.
+         */
+        private boolean isCongestion(int statusCode) {
+            return statusCode == 0 || statusCode == 408 || statusCode == 429 || statusCode >= 500;
+        }
+
+        private void closeQuietly(InputStream in) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private String createKey(Context ctx, S3Credentials credentials, UploadSource source, int index) {
+            return credentials.getUniqueFilePrefix()+suffixRule.getSuffix(source.getUri(), index)+"."+source.getExtension(ctx);
+        }
+
+        /**
+         * Uploads the file with a single S3 POST request. The file is streamed into a request of
+         * fixed length as it is sent.
+         */
+        private SyncResponseHandler uploadSingle(S3Credentials credentials, InputStream in, long length, String key,
+                                                 int index, FileUploadMetrics metrics) {
+            SyncResponseHandler response = new SyncResponseHandler(handle);
+            Map<String, String> fields = new LinkedHashMap<>();
+            fields.put("key", key);
+            fields.put("AWSAccessKeyId", credentials.getAWSAccessKeyId());
+            fields.put("policy", credentials.getPolicy());
+            fields.put("signature", credentials.getSignature());
+            fields.put("success_action_status", String.valueOf(DEFAULT_SUCCESS_STATUS));
+            fields.put("acl", acl);
+            fields.put("Content-Type", credentials.getContentType());
+
+            ProgressInputStream body = new ProgressInputStream(in, progress, index);
+            MultipartFormEntity entity;
+            try {
+                entity = new MultipartFormEntity(fields, "file", key.substring(key.lastIndexOf('/') + 1),
+                    credentials.getContentType(), body, length);
+            } catch (IOException e) {
+                response.onFailure(0, null, null, e);
+                return response;
+            }
+
+            long start = SystemClock.uptimeMillis();
+            client.post(null, String.format(S3_URL_FORMAT, credentials.getBucket()), entity,
+                entity.getMultipartContentType(), response);
+            recordTransfer(metrics, body, start);
+            return response;
+        }
+
+        /**
+         * Uploads the raw file with a single PUT request to the presigned url of
+         * {@code credentials}, streaming it into a request with an exact Content-Length.
+         */
+        private SyncResponseHandler uploadPresigned(S3Credentials credentials, InputStream in, long length, int index,
+                                                    FileUploadMetrics metrics) {
+            SyncResponseHandler response = new SyncResponseHandler(handle);
+            ProgressInputStream body = new ProgressInputStream(in, progress, index);
+            long start = SystemClock.uptimeMillis();
+            client.put(null, credentials.getUploadUrl(), new InputStreamEntity(body, length),
+                credentials.getContentType(), response);
+            recordTransfer(metrics, body, start);
+            return response;
+        }
+
+        /**
+         * Compares the ETag of a successful response with the MD5 digest of the bytes that were
+         * sent, returning an {@link IntegrityException} if they don't match.
+         */
+        private IntegrityException verifyIntegrity(SyncResponseHandler response, ChecksumInputStream checksum,
+                                                   FileUploadMetrics metrics) {
+            String md5 = checksum.getMd5();
+            String etag = getETag(response);
+            if (ChecksumInputStream.isMd5ETag(etag) && !ChecksumInputStream.matchesETag(md5, etag)) {
+                return new IntegrityException(etag, md5);
+            }
+
+            metrics.integrityVerified = ChecksumInputStream.isMd5ETag(etag);
+            metrics.md5 = md5;
+            metrics.sha256 = checksum.getSha256();
+            return null;
+        }
+
+        /**
+         * Returns the ETag of an upload response, from its header or, for POST uploads, from the
+         * XML document S3 responds with.
+         */
+        private String getETag(SyncResponseHandler response) {
+            String etag = response.getHeader("ETag");
+            byte[] body = response.getResponseBody();
+            if (etag == null && body != null) {
+                String xml = new String(body);
+                int start = xml.indexOf("<ETag>");
+                int end = xml.indexOf("</ETag>");
+                if (start >= 0 && end > start) {
+                    etag = xml.substring(start + "<ETag>".length(), end).replace("&quot;", "\"");
+                }
+            }
+            return etag;
+        }
+
+        private void recordTransfer(FileUploadMetrics metrics, ProgressInputStream body, long start) {
+            metrics.bytes = body.getBytesRead();
+            metrics.transferTime = SystemClock.uptimeMillis() - start;
+            metrics.timeToFirstByte = body.getFirstReadTime() >= 0 ? body.getFirstReadTime() - start : -1;
+        }
+
+        private String stripQuery(String url) {
+            int query = url.indexOf('?');
+            return query >= 0 ? url.substring(0, query) : url;
+        }
+
+        private void uploadMultipart(S3Credentials credentials, InputStream in, long length,
+                                     String key, int index, String[] result, FileUploadMetrics metrics,
+                                     ChecksumInputStream checksum) {
+            metrics.multipart = true;
+            long partSize = MultipartUpload.getPartSize(length, multipartPartSize);
+            int partCount = MultipartUpload.getPartCount(length, partSize);
+
+            S3MultipartCredentials multipartCredentials = ((S3MultipartCredentialsProvider) credentialsProvider)
+                .getMultipartCredentials(key, credentials.getContentType(), acl, partCount);
+            if (multipartCredentials == null || multipartCredentials.getPartUrls() == null
+                || multipartCredentials.getPartUrls().length != partCount) {
+                fail(new IOException("Failed retrieving S3 multipart credentials from provider"), index);
+                return;
+            }
+
+            MultipartUpload upload = new MultipartUpload(client, partExecutor, (int) partSize,
+                Math.min(maxConcurrentParts, partCount), retryPolicy != null ? retryPolicy : new RetryPolicy());
+            upload.setProgress(progress, index);
+            upload.setHandle(handle);
+            upload.setNetworkGate(network);
+            upload.setVerifyParts(checksum != null);
+            long start = SystemClock.uptimeMillis();
+            try {
+                String url = upload.upload(in, multipartCredentials);
+                metrics.bytes = length;
+                if (checksum != null) {
+                    metrics.integrityVerified = upload.isVerified();
+                    metrics.md5 = checksum.getMd5();
+                    metrics.sha256 = checksum.getSha256();
+                }
+                if (concurrency != null) {
+                    concurrency.onResult(length, false);
+                }
+                onFileUploaded(index, url, result);
+            } catch (IOException e) {
+                e.printStackTrace();
+                fail(e, index);
+            } finally {
+                metrics.transferTime = SystemClock.uptimeMillis() - start;
+                metrics.retryCount = upload.getRetryCount();
+            }
+        }
+
+        private void onFileUploaded(int index, String url, String[] result) {
+            result[index] = url;
+            progress.complete(index);
+            if (journal != null) {
+                journal.recordCompleted(uploadId, index, url);
+            }
+            publishFileUploaded(index, url);
+        }
+
+        private void publishFileUploaded(final int index, final String url) {
+            if (!(listener instanceof FileUploadListener)) {
+                return;
+            }
+
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!handle.isCancelled()) {
+                        ((FileUploadListener) listener).onFileUploaded(index, url);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Reports a failed file to the listener. If this task has a {@link RetryPolicy}, the
+         * remaining files continue uploading and every failed file is reported. Otherwise the first
+         * failure cancels the remaining uploads and aborts those already in flight, whose failures
+         * are not reported separately.
+         */
+        private void fail(Throwable error, int fileIndex) {
+            if (errors != null && fileIndex < errors.length) {
+                errors[fileIndex] = error;
+            }
+            if (handle.isCancelled()) {
+                // failures caused by aborting the requests of a cancelled upload aren't reported
+                return;
+            }
+
+            if (retryPolicy != null && !failFast) {
+                publishFailure(error, fileIndex);
+                return;
+            }
+
+            if (failed.compareAndSet(false, true)) {
+                publishFailure(error, fileIndex);
+            }
+            handle.setStatus(UploadHandle.Status.FAILED);
+            handle.abort();
+            cancel(true);
+        }
+
+        private void publishFileMetrics(FileUploadMetrics metrics) {
+            if (metricsListener != null) {
+                fileMetrics.add(metrics);
+                metricsListener.onFileMetrics(metrics);
+            }
+        }
+
+        /**
+         * Reports the {@link BatchUploadMetrics} of this task, summarizing the metrics of its
+         * files. {@code result} is {@code null} if the task stopped before uploading any files.
+         */
+        private void publishBatchMetrics(int fileCount, String[] result) {
+            if (metricsListener == null) {
+                return;
+            }
+
+            BatchUploadMetrics metrics = new BatchUploadMetrics();
+            metrics.fileCount = fileCount;
+            metrics.credentialsTime = credentialsTime;
+            metrics.duration = SystemClock.uptimeMillis() - startTime;
+            if (result != null) {
+                for (String url : result) {
+                    if (url != null) {
+                        metrics.successCount++;
+                    }
+                }
+            }
+            synchronized (fileMetrics) {
+                for (FileUploadMetrics file : fileMetrics) {
+                    metrics.bytes += file.bytes;
+                    metrics.retryCount += file.retryCount;
+                    if (file.deduplicated) {
+                        metrics.deduplicatedCount++;
+                    }
+                }
+            }
+
+            UploadHandle.Status status = handle.getStatus();
+            if (status == UploadHandle.Status.FAILED || status == UploadHandle.Status.CANCELLED) {
+                metrics.status = status;
+            } else {
+                metrics.status = isCancelled() ? UploadHandle.Status.CANCELLED : UploadHandle.Status.COMPLETED;
+            }
+            metricsListener.onBatchMetrics(metrics);
+        }
+
+        private void publishFailure(final Throwable error, final int fileIndex) {
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    if (listener != null && !handle.isCancelled()) {
+                        listener.onUploadFailed(error, fileIndex);
+                    }
+                }
+            });
+        }
+
+        @Override
+        protected void onPostExecute(String[] urls) {
+            client.release();
+            handle.setStatus(UploadHandle.Status.COMPLETED);
+            if (listener != null) {
+                listener.onUploadComplete(urls);
+            }
+        }
+
+        @Override
+        protected void onCancelled(String[] urls) {
+            client.release();
+            handle.setStatus(UploadHandle.Status.CANCELLED);
+        }
+
+        @Override
+        protected void onProgressUpdate(Long... values) {
+            if (listener != null && values.length > 1) {
+                long bytesUploaded = values[0];
+                long totalBytes = values[1];
+                listener.onProgress(totalBytes > 0 ? (int) (bytesUploaded * 100 / totalBytes) : 0);
+                if (listener instanceof UploadProgressListener) {
+                    ((UploadProgressListener) listener).onProgress(bytesUploaded, totalBytes);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * A listener interface to receive completion, error, and progress events during an upload
+     * request
+     */
+    public interface UploadListener {
+        /**
+         * <p>
+         * This method is invoked periodically while files are being uploaded, and whenever an
+         * individual file has finished uploading. The progress is an integer representation from
+         * 0 - 100 of how many bytes have been uploaded across all files in the request using the
+         * following formula:
+         * </p>
+         *
+         * <pre>
+         * <code>progress = bytesUploaded / totalBytes * 100;</code>
+         * </pre>
+         *
+         * <p>
+         * Events are delivered at most once per {@link UploadManager#getProgressInterval()}.
+         * </p>
+         *
+         * @param progress The completion progress of the current upload request, as an integer in
+         *                 the range 0 - 100
+         *
+         * @see UploadProgressListener
+         */
+        void onProgress(int progress);
+
+        /**
          * This method is invoked once all files in the current request have been successfully
          * uploaded. This will be called immediately after the last call to
          * {@link UploadListener#onProgress(int)}
@@ -375,6 +2176,83 @@ public class UploadManager {
         void onUploadFailed(Throwable error, int failureIndex);
     }
 
+    /**
+     * An extension of {@link UploadListener} that additionally receives the exact number of bytes
+     * uploaded. If the listener passed to an UploadManager implements this interface, both
+     * progress methods will be invoked for every progress event.
+     */
+    public interface UploadProgressListener extends UploadListener {
+        /**
+         * This method is invoked periodically while files are being uploaded, at most once per
+         * {@link UploadManager#getProgressInterval()}, and whenever an individual file has finished
+         * uploading.
+         *
+         * <p>
+         * {@code totalBytes} is the combined size of all files in the request. Files whose size
+         * cannot be determined in advance are counted as they are read, so {@code totalBytes} may
+         * grow while they are being uploaded.
+         * </p>
+         *
+         * @param bytesUploaded The number of bytes uploaded so far across all files in the request
+         * @param totalBytes The total number of bytes to upload in the request
+         */
+        void onProgress(long bytesUploaded, long totalBytes);
+    }
+
+    /**
+     * An extension of {@link UploadListener} that is additionally notified as soon as each file of
+     * a request has been uploaded, so that the first results of a request can be used while the
+     * remaining files are still uploading.
+     */
+    public interface FileUploadListener extends UploadListener {
+        /**
+         * This method is invoked on the main thread as soon as a single file has been uploaded.
+         * It is invoked once for every successful file, including files that were uploaded before
+         * a resumed request was interrupted, and always before
+         * {@link UploadListener#onUploadComplete(String[])}.
+         *
+         * @param index The index of the file in the current upload request queue
+         * @param url The S3 url of the uploaded file
+         */
+        void onFileUploaded(int index, String url);
+    }
+
+    /**
+     * A listener interface to receive completion, error, and progress events while uploading a
+     * variant set with {@link UploadManager#uploadVariants(Map, VariantSetListener)}. All methods
+     * are invoked on the main thread.
+     */
+    public interface VariantSetListener {
+        /**
+         * This method is invoked periodically while the variants are being uploaded.
+         *
+         * @param progress The combined completion progress of all variants, as an integer in the
+         *                 range 0 - 100
+         *
+         * @see UploadListener#onProgress(int)
+         */
+        void onProgress(int progress);
+
+        /**
+         * This method is invoked once every variant of the set has been successfully uploaded.
+         *
+         * @param urls The S3 url of each variant by its name, in the order the variants were
+         *             provided
+         */
+        void onVariantsUploaded(Map<String, String> urls);
+
+        /**
+         * This method is invoked once if any variant of the set fails to upload, after which the
+         * remaining variants are cancelled.
+         *
+         * @param error A {@link Throwable} indicating why the upload failed
+         * @param variant The name of the variant that failed. Failures of the set as a whole,
+         *                such as failing to retrieve credentials, are reported for the first
+         *                variant.
+         */
+        void onVariantsFailed(Throwable error, String variant);
+    }
+
     /**
      * An interface for generating a string suffix to be appended to an uploaded file name given a
      * {@link Uri} for the original file and an index for the file's position in the current
@@ -392,6 +2270,51 @@ public class UploadManager {
         String getSuffix(Uri uri, int index);
     }
 
+    /**
+     * An interface for assigning a priority to each file of an upload request, given a
+     * {@link Uri} for the file and its index in the request. Files with a higher priority are
+     * uploaded before the other files of the same request.
+     *
+     * @see UploadManager#setPriorityRule(PriorityRule)
+     */
+    public interface PriorityRule {
+        /**
+         * Returns the priority of the given file within its request.
+         *
+         * @param uri A {@link Uri} representing the file being uploaded
+         * @param index The index of the file in the current upload request queue
+         * @return The priority of the file, higher values are uploaded first
+         */
+        int getPriority(Uri uri, int index);
+    }
+
+    /**
+     * An implementation of {@link PriorityRule} that maps an array of priorities to the files being
+     * uploaded, in the same way {@link IndexedSuffixRule} maps suffixes.
+     */
+    public static class IndexedPriorityRule implements PriorityRule {
+        private int[] priorities;
+
+        /**
+         * Creates a new instance of this rule with the given array of priorities.
+         *
+         * @param priorities An int array to use when mapping priorities to Uris
+         */
+        public IndexedPriorityRule(int[] priorities) {
+            this.priorities = priorities;
+        }
+
+        /**
+         * Returns a priority from the internal priority array using the given index. If
+         * {@code index} is greater than the length of the priority array, it will be "wrapped" to
+         * the beginning of the array such that a priority is always returned.
+         */
+        @Override
+        public int getPriority(Uri uri, int index) {
+            return priorities[index % priorities.length];
+        }
+    }
+
     /**
      * An implementation of {@link SuffixRule} that maps an array of suffixes to the files being
      * uploaded.
@@ -0,0 +1,31 @@
+package com.isbx.androidtools.networking;
+
+/**
+ * A listener that receives performance metrics for every file and every request uploaded through
+ * an {@link UploadManager}, for example to feed upload latency dashboards.
+ *
+ * <p>
+ * Unlike {@link UploadManager.UploadListener}, this listener is invoked on the background thread
+ * that finished the file or request, so implementations must be thread-safe and should return
+ * quickly.
+ * </p>
+ *
+ * @see UploadManager#setMetricsListener(UploadMetricsListener)
+ */
+public interface UploadMetricsListener {
+    /**
+     * This method is invoked once for every file of a request that was started, after it has been
+     * uploaded or has failed.
+     *
+     * @param metrics The {@link FileUploadMetrics} of the file
+     */
+    void onFileMetrics(FileUploadMetrics metrics);
+
+    /**
+     * This method is invoked once for every request, after all of its files have finished or the
+     * request has been stopped.
+     *
+     * @param metrics The {@link BatchUploadMetrics} of the request
+     */
+    void onBatchMetrics(BatchUploadMetrics metrics);
+}
@@ -0,0 +1,125 @@
+package com.isbx.androidtools.networking;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks the number of bytes uploaded across all files of a single upload request and reports it
+ * to a {@link Callback}, at most once per reporting interval.
+ *
+ * <p>
+ * The total size of the request is the sum of the lengths of its files. Files whose length is
+ * unknown contribute the number of bytes read from them so far, so they never make the progress
+ * go backwards. The length of a file that is only known once its upload starts is added with
+ * {@link #setLength(int, long)}.
+ * </p>
+ */
+class UploadProgress {
+
+    /**
+     * Receives throttled progress updates. This is invoked on whichever upload thread caused the
+     * update.
+     */
+    interface Callback {
+        void onProgress(long bytesUploaded, long totalBytes);
+    }
+
+    private final long[] lengths;
+    private final AtomicLong knownTotal = new AtomicLong();
+    private final long intervalMs;
+    private final Callback callback;
+
+    private final AtomicLongArray fileBytes;
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final AtomicLong unknownLengthBytes = new AtomicLong();
+    private final AtomicLong lastReport = new AtomicLong();
+
+    /**
+     * Creates a new UploadProgress.
+     *
+     * @param lengths The length in bytes of each file in the request, or {@code -1} if unknown
+     * @param intervalMs The minimum time in milliseconds between two progress reports
+     * @param callback The {@link Callback} to report progress to
+     */
+    UploadProgress(long[] lengths, long intervalMs, Callback callback) {
+        this.lengths = lengths;
+        this.intervalMs = intervalMs;
+        this.callback = callback;
+        this.fileBytes = new AtomicLongArray(lengths.length);
+
+        long total = 0;
+        for (long length : lengths) {
+            if (length > 0) {
+                total += length;
+            }
+        }
+        this.knownTotal.set(total);
+    }
+
+    /**
+     * Sets the length of the file at {@code index}, which was unknown when the request started,
+     * before any of its bytes were uploaded.
+     */
+    void setLength(int index, long length) {
+        lengths[index] = length;
+        knownTotal.addAndGet(length);
+    }
+
+    /**
+     * Records that {@code count} more bytes of the file at {@code index} have been uploaded.
+     */
+    void addBytes(int index, long count) {
+        fileBytes.addAndGet(index, count);
+        uploadedBytes.addAndGet(count);
+        if (lengths[index] < 0) {
+            unknownLengthBytes.addAndGet(count);
+        }
+        report(false);
+    }
+
+    /**
+     * Discards the bytes recorded for the file at {@code index}, for example because its upload
+     * is being retried from the beginning.
+     */
+    void reset(int index) {
+        long count = fileBytes.getAndSet(index, 0);
+        uploadedBytes.addAndGet(-count);
+        if (lengths[index] < 0) {
+            unknownLengthBytes.addAndGet(-count);
+        }
+        report(false);
+    }
+
+    /**
+     * Marks the file at {@code index} as completely uploaded and reports the progress immediately.
+     */
+    void complete(int index) {
+        if (lengths[index] >= 0) {
+            long count = fileBytes.getAndSet(index, lengths[index]);
+            uploadedBytes.addAndGet(lengths[index] - count);
+        }
+        report(true);
+    }
+
+    long getUploadedBytes() {
+        return uploadedBytes.get();
+    }
+
+    long getTotalBytes() {
+        return knownTotal.get() + unknownLengthBytes.get();
+    }
+
+    private void report(boolean force) {
+        long now = SystemClock.uptimeMillis();
+        long last = lastReport.get();
+        if (force) {
+            lastReport.set(now);
+        } else if (now - last < intervalMs || !lastReport.compareAndSet(last, now)) {
+            return;
+        }
+
+        callback.onProgress(getUploadedBytes(), getTotalBytes());
+    }
+}
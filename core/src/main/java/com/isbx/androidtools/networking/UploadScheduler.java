@@ -0,0 +1,158 @@
+package com.isbx.androidtools.networking;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The executor that runs the individual file uploads of every request made through an
+ * {@link UploadManager}. Instead of running uploads in the order they were submitted, waiting
+ * uploads are ordered by:
+ *
+ * <ol>
+ * <li>The priority of their request, as set by {@link UploadHandle#setPriority(int)}, highest
+ * first</li>
+ * <li>Their round, so that requests of equal priority take turns: every request's first file
+ * runs before any request's second file, and so on. A request that starts while others are
+ * already uploading joins at the current round, rather than jumping ahead of them.</li>
+ * <li>The order they were submitted in</li>
+ * </ol>
+ *
+ * <p>
+ * Changing a request's priority reorders its uploads that are still waiting. Uploads that have
+ * already started are never interrupted.
+ * </p>
+ */
+class UploadScheduler extends ThreadPoolExecutor {
+    // weight of the latest sample in the moving average of wait times
+    private static final double WAIT_TIME_SMOOTHING = 0.2;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private long currentRound;
+    private double averageWaitTime;
+
+    UploadScheduler(int threads, long keepAliveMs) {
+        super(threads, threads, keepAliveMs, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>());
+        allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedules an upload belonging to the request of {@code handle}.
+     */
+    Future<?> submit(UploadHandle handle, Runnable upload) {
+        Job job;
+        synchronized (this) {
+            long round = Math.max(currentRound, handle.getNextRound());
+            handle.setNextRound(round + 1);
+            job = new Job(handle, upload, round, sequence.getAndIncrement());
+        }
+        execute(job);
+        return job;
+    }
+
+    /**
+     * Schedules uploads belonging to the request of {@code handle} that are only useful together,
+     * such as the variants of a set. They all join the same round with consecutive sequence
+     * numbers, so no upload of another request of equal priority runs in between them.
+     */
+    List<Future<?>> submitAll(UploadHandle handle, List<Runnable> uploads) {
+        List<Future<?>> jobs = new ArrayList<>(uploads.size());
+        synchronized (this) {
+            long round = Math.max(currentRound, handle.getNextRound());
+            handle.setNextRound(round + 1);
+            for (Runnable upload : uploads) {
+                jobs.add(new Job(handle, upload, round, sequence.getAndIncrement()));
+            }
+        }
+        for (Future<?> job : jobs) {
+            execute((Job) job);
+        }
+        return jobs;
+    }
+
+    /**
+     * Reorders the waiting uploads of the request of {@code handle} after its priority changed.
+     */
+    void reprioritize(UploadHandle handle) {
+        List<Job> jobs = new ArrayList<>();
+        for (Runnable runnable : getQueue()) {
+            if (runnable instanceof Job && ((Job) runnable).handle == handle) {
+                jobs.add((Job) runnable);
+            }
+        }
+
+        for (Job job : jobs) {
+            // a job that was taken by a worker in the meantime can't be removed, and is left alone
+            if (getQueue().remove(job)) {
+                job.priority = handle.getPriority();
+                getQueue().offer(job);
+            }
+        }
+        if (!jobs.isEmpty()) {
+            // make sure a worker is available, since offering to the queue doesn't start one
+            prestartCoreThread();
+        }
+    }
+
+    /**
+     * Returns the number of uploads waiting for a thread.
+     */
+    int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    /**
+     * Returns an exponential moving average of the time in milliseconds uploads waited for a
+     * thread.
+     */
+    synchronized long getAverageWaitTime() {
+        return Math.round(averageWaitTime);
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        if (r instanceof Job) {
+            Job job = (Job) r;
+            long waitTime = SystemClock.uptimeMillis() - job.queuedAt;
+            synchronized (this) {
+                currentRound = Math.max(currentRound, job.round);
+                averageWaitTime += (waitTime - averageWaitTime) * WAIT_TIME_SMOOTHING;
+            }
+        }
+    }
+
+    private static class Job extends FutureTask<Void> implements Comparable<Job> {
+        private final UploadHandle handle;
+        private final long round;
+        private final long sequence;
+        private final long queuedAt = SystemClock.uptimeMillis();
+        private int priority;
+
+        Job(UploadHandle handle, Runnable upload, long round, long sequence) {
+            super(upload, null);
+            this.handle = handle;
+            this.round = round;
+            this.sequence = sequence;
+            this.priority = handle.getPriority();
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            if (round != other.round) {
+                return round < other.round ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
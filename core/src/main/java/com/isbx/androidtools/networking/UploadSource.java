@@ -0,0 +1,37 @@
+package com.isbx.androidtools.networking;
+
+import android.content.Context;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The data uploaded for a single file of an upload request. A source may be opened more than once
+ * if its upload is retried, and must produce the same data every time.
+ */
+interface UploadSource {
+    /**
+     * Returns the {@link Uri} this source was created from. This is passed to
+     * {@link UploadManager.SuffixRule}s and recorded in the {@link UploadJournal}.
+     */
+    Uri getUri();
+
+    /**
+     * Returns the size in bytes of the data, or {@code -1} if it cannot be determined without
+     * reading it.
+     */
+    long getLength(Context context);
+
+    /**
+     * Returns the file extension to use for the uploaded S3 key, without a leading dot.
+     */
+    String getExtension(Context context);
+
+    /**
+     * Opens a new stream of the data to upload. If {@link #getLength(Context)} is known, the
+     * stream must produce exactly that many bytes, since requests are sent with that
+     * Content-Length. The caller is responsible for closing it.
+     */
+    InputStream open(Context context) throws IOException;
+}
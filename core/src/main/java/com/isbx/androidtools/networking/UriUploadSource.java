@@ -0,0 +1,103 @@
+package com.isbx.androidtools.networking;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.webkit.MimeTypeMap;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link UploadSource} that uploads the content of a {@code file://} or {@code content://}
+ * {@link Uri} as is.
+ *
+ * <p>
+ * Wherever possible, the content is read through the {@link java.nio.channels.FileChannel} of a
+ * file descriptor, limited to exactly the length reported by {@link #getLength(Context)}, so that
+ * requests can be sent with a fixed Content-Length. Only content without a known length, such as
+ * a pipe from a content provider, is read through
+ * {@link android.content.ContentResolver#openInputStream(Uri)}.
+ * </p>
+ */
+class UriUploadSource implements UploadSource {
+    private final Uri uri;
+
+    UriUploadSource(Uri uri) {
+        this.uri = uri;
+    }
+
+    /**
+     * Wraps each of the given {@link Uri}s in a {@link UriUploadSource}. {@code null} Uris are
+     * mapped to {@code null} sources.
+     */
+    static UploadSource[] fromUris(Uri... uris) {
+        UploadSource[] sources = new UploadSource[uris.length];
+        for (int i = 0; i < uris.length; i++) {
+            sources[i] = uris[i] != null ? new UriUploadSource(uris[i]) : null;
+        }
+        return sources;
+    }
+
+    @Override
+    public Uri getUri() {
+        return uri;
+    }
+
+    @Override
+    public long getLength(Context context) {
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme())) {
+            return new File(uri.getPath()).length();
+        }
+
+        AssetFileDescriptor fd = null;
+        try {
+            fd = context.getContentResolver().openAssetFileDescriptor(uri, "r");
+            return fd != null ? fd.getLength() : -1;
+        } catch (FileNotFoundException e) {
+            return -1;
+        } finally {
+            if (fd != null) {
+                try {
+                    fd.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    @Override
+    public String getExtension(Context context) {
+        if (uri.getScheme().equals(ContentResolver.SCHEME_CONTENT)) {
+            String mimeType = context.getContentResolver().getType(uri);
+            return MimeTypeMap.getSingleton().getExtensionFromMimeType(mimeType);
+        }
+        return MimeTypeMap.getFileExtensionFromUrl(String.valueOf(Uri.fromFile(new File(uri.getPath()))));
+    }
+
+    @Override
+    public InputStream open(Context context) throws IOException {
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme())) {
+            File file = new File(uri.getPath());
+            FileInputStream in = new FileInputStream(file);
+            return new FileChannelInputStream(in.getChannel(), 0, file.length(), in);
+        }
+
+        AssetFileDescriptor fd = context.getContentResolver().openAssetFileDescriptor(uri, "r");
+        if (fd == null || fd.getLength() == AssetFileDescriptor.UNKNOWN_LENGTH) {
+            if (fd != null) {
+                fd.close();
+            }
+            return context.getContentResolver().openInputStream(uri);
+        }
+
+        // the stream owns the descriptor, so closing it closes the descriptor exactly once
+        FileInputStream in = fd.createInputStream();
+        return new FileChannelInputStream(in.getChannel(), fd.getStartOffset(), fd.getLength(), in);
+    }
+}
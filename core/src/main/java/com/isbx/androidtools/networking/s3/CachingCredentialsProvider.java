@@ -0,0 +1,289 @@
+package com.isbx.androidtools.networking.s3;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An implementation of {@link S3CredentialsProvider} that caches the credentials returned by
+ * another provider until shortly before they expire, as indicated by
+ * {@link S3Credentials#getExpirationDate()}. This avoids making a request for new credentials,
+ * such as the HTTP request made by {@link S3ApiProvider}, before every upload.
+ *
+ * <p>
+ * Once the cached credentials are within the refresh window of their expiration date, new
+ * credentials are fetched in the background while the cached ones keep being returned. Only when
+ * they are within the expiry margin, and too close to expiring to finish an upload with, will
+ * callers block until new credentials are available. Concurrent callers always share a single
+ * in-flight request to the wrapped provider.
+ * </p>
+ *
+ * <p>
+ * Since the same credentials are used for several upload requests, a random segment is appended
+ * to their {@link S3Credentials#getUniqueFilePrefix()} every time they are returned, so that
+ * files uploaded by different requests don't overwrite each other. This requires the credentials'
+ * policy to allow any key that starts with the original prefix, which is already necessary to
+ * upload more than one file per request. Credentials without a parseable expiration date are
+ * never cached, and neither are credentials with a presigned
+ * {@link S3Credentials#getUploadUrl()}, since that url is only valid for a single file.
+ * </p>
+ *
+ * <p>
+ * If the wrapped provider implements {@link S3BatchCredentialsProvider}, requests for the
+ * credentials of several files are forwarded to it without caching, so every file keeps its own
+ * policy and key prefix. Otherwise the cached credentials are shared by all files of the request.
+ * Multipart uploads are always forwarded to the wrapped provider, and are only supported if it
+ * implements {@link S3MultipartCredentialsProvider} and supports them itself.
+ * </p>
+ */
+public class CachingCredentialsProvider implements S3BatchCredentialsProvider, S3MultipartCredentialsProvider {
+
+    private static final long DEFAULT_REFRESH_WINDOW_MS = 5 * 60 * 1000;
+    private static final long DEFAULT_EXPIRY_MARGIN_MS = 60 * 1000;
+    private static final long EXECUTOR_KEEP_ALIVE_MS = 30000;
+    private static final String[] DATE_FORMATS = {
+        "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'",
+        "yyyy-MM-dd'T'HH:mm:ss'Z'",
+        "yyyy-MM-dd'T'HH:mm:ss.SSSZ",
+        "yyyy-MM-dd'T'HH:mm:ssZ"
+    };
+
+    private final S3CredentialsProvider provider;
+    private final ThreadPoolExecutor executor;
+    private final Random random = new Random();
+
+    private long refreshWindow = DEFAULT_REFRESH_WINDOW_MS;
+    private long expiryMargin = DEFAULT_EXPIRY_MARGIN_MS;
+
+    private S3Credentials credentials;
+    private long expirationTime;
+    private FutureTask<S3Credentials> pendingRequest;
+
+    /**
+     * Creates a new CachingCredentialsProvider that caches the credentials returned by
+     * {@code provider}.
+     *
+     * @param provider The {@link S3CredentialsProvider} to retrieve new credentials from
+     */
+    public CachingCredentialsProvider(S3CredentialsProvider provider) {
+        this.provider = provider;
+        this.executor = new ThreadPoolExecutor(1, 1, EXECUTOR_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Sets how long in milliseconds before the cached credentials expire new credentials should
+     * be fetched in the background. The default is 5 minutes.
+     *
+     * @param refreshWindow The refresh window in milliseconds
+     * @return This CachingCredentialsProvider object to allow for method chaining
+     */
+    public synchronized CachingCredentialsProvider setRefreshWindow(long refreshWindow) {
+        this.refreshWindow = refreshWindow;
+        return this;
+    }
+
+    /**
+     * Sets how long in milliseconds before the cached credentials expire they should no longer be
+     * used, because an upload started with them might not finish in time. The default is 1
+     * minute.
+     *
+     * @param expiryMargin The expiry margin in milliseconds
+     * @return This CachingCredentialsProvider object to allow for method chaining
+     */
+    public synchronized CachingCredentialsProvider setExpiryMargin(long expiryMargin) {
+        this.expiryMargin = expiryMargin;
+        return this;
+    }
+
+    /**
+     * Returns the cached credentials if they are still valid, otherwise blocks until new
+     * credentials have been retrieved from the wrapped provider.
+     *
+     * @return A valid {@link S3Credentials} object, or {@code null} if the wrapped provider failed
+     *         to provide one
+     */
+    @Override
+    public S3Credentials getCredentials() {
+        Future<S3Credentials> request;
+        synchronized (this) {
+            long remaining = expirationTime - System.currentTimeMillis();
+            if (credentials != null && remaining > expiryMargin) {
+                if (remaining <= refreshWindow) {
+                    refresh();
+                }
+                return withUniquePrefix(credentials);
+            }
+            request = refresh();
+        }
+
+        try {
+            S3Credentials result = request.get();
+            return result != null ? withUniquePrefix(result) : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Forwards the request to the wrapped provider if it implements
+     * {@link S3BatchCredentialsProvider}, otherwise returns the cached credentials for every file.
+     *
+     * @param count The number of files to provide credentials for
+     * @return An array of {@code count} valid {@link S3Credentials} objects, or {@code null} if
+     *         the credentials could not be retrieved
+     */
+    @Override
+    public S3Credentials[] getCredentials(int count) {
+        if (provider instanceof S3BatchCredentialsProvider) {
+            return ((S3BatchCredentialsProvider) provider).getCredentials(count);
+        }
+
+        S3Credentials shared = getCredentials();
+        if (shared == null) {
+            return null;
+        }
+        S3Credentials[] credentials = new S3Credentials[count];
+        Arrays.fill(credentials, shared);
+        return credentials;
+    }
+
+    /**
+     * Returns whether the wrapped provider implements {@link S3MultipartCredentialsProvider} and
+     * currently supports multipart uploads.
+     *
+     * @return Whether multipart uploads can be forwarded to the wrapped provider
+     */
+    @Override
+    public boolean isMultipartSupported() {
+        return provider instanceof S3MultipartCredentialsProvider
+            && ((S3MultipartCredentialsProvider) provider).isMultipartSupported();
+    }
+
+    /**
+     * Forwards the request to the wrapped provider if it implements
+     * {@link S3MultipartCredentialsProvider}.
+     *
+     * @return A valid {@link S3MultipartCredentials} object, or {@code null} if the upload could
+     *         not be initiated or the wrapped provider doesn't support multipart uploads
+     */
+    @Override
+    public S3MultipartCredentials getMultipartCredentials(String key, String contentType, String acl, int partCount) {
+        if (provider instanceof S3MultipartCredentialsProvider) {
+            return ((S3MultipartCredentialsProvider) provider)
+                .getMultipartCredentials(key, contentType, acl, partCount);
+        }
+        return null;
+    }
+
+    /**
+     * Starts retrieving new credentials in the background if no valid credentials are cached, for
+     * example when a screen that is likely to upload files is opened.
+     */
+    public synchronized void prefetch() {
+        if (credentials == null || expirationTime - System.currentTimeMillis() <= refreshWindow) {
+            refresh();
+        }
+    }
+
+    /**
+     * Discards the cached credentials, so the next call to {@link #getCredentials()} will
+     * retrieve new ones.
+     */
+    public synchronized void invalidate() {
+        credentials = null;
+        expirationTime = 0;
+    }
+
+    private synchronized Future<S3Credentials> refresh() {
+        if (pendingRequest == null) {
+            pendingRequest = new FutureTask<>(new Callable<S3Credentials>() {
+                @Override
+                public S3Credentials call() {
+                    S3Credentials result = null;
+                    try {
+                        result = provider.getCredentials();
+                    } finally {
+                        onRefreshed(result);
+                    }
+                    return result;
+                }
+            });
+            executor.execute(pendingRequest);
+        }
+        return pendingRequest;
+    }
+
+    private synchronized void onRefreshed(S3Credentials result) {
+        pendingRequest = null;
+        if (result != null) {
+            long time = parseExpirationDate(result.getExpirationDate());
+            if (time > 0 && result.getUploadUrl() == null) {
+                credentials = result;
+                expirationTime = time;
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of {@code source} with a random segment appended to its key prefix. Credentials
+     * with a presigned upload url are returned as is, since the url was signed for one exact key
+     * and is never shared.
+     */
+    private S3Credentials withUniquePrefix(S3Credentials source) {
+        if (source.getUploadUrl() != null) {
+            return source;
+        }
+
+        String segment;
+        synchronized (random) {
+            segment = Long.toHexString(random.nextLong() & Long.MAX_VALUE);
+        }
+
+        S3Credentials copy = new S3Credentials(source);
+        copy.setUniqueFilePrefix((source.getUniqueFilePrefix() != null ? source.getUniqueFilePrefix() : "") + segment + "-");
+        return copy;
+    }
+
+    /**
+     * Parses an expiration date in ISO 8601 format or as milliseconds since the epoch, returning
+     * {@code 0} if it cannot be parsed.
+     */
+    private static long parseExpirationDate(String expirationDate) {
+        if (expirationDate == null) {
+            return 0;
+        }
+
+        try {
+            return Long.parseLong(expirationDate);
+        } catch (NumberFormatException e) {
+            // not a timestamp, try the date formats below
+        }
+
+        for (String format : DATE_FORMATS) {
+            SimpleDateFormat dateFormat = new SimpleDateFormat(format, Locale.US);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            try {
+                return dateFormat.parse(expirationDate).getTime();
+            } catch (ParseException e) {
+                // try the next format
+            }
+        }
+        return 0;
+    }
+}
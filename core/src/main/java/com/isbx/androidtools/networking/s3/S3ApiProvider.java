@@ -1,5 +1,7 @@
 package com.isbx.androidtools.networking.s3;
 
+import android.net.Uri;
+
 import com.google.gson.Gson;
 
 import java.io.BufferedInputStream;
@@ -8,14 +10,24 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Arrays;
 
 /**
  * An implementation of {@link S3CredentialsProvider} that retrieves pre-signed S3 credentials from
  * a remote API server via HTTP GET requests. The API endpoint provided is expected to give a JSON
  * response that matches the structure of {@link S3Credentials} exactly.
+ *
+ * <p>
+ * Credentials for several files can be retrieved with a single request if a separate endpoint is
+ * provided via {@link S3ApiProvider#setBatchApiUrl(String)}, and multipart uploads are supported
+ * only if an endpoint is provided via {@link S3ApiProvider#setMultipartApiUrl(String)}. Without
+ * one, large files are uploaded in a single request like any other file.
+ * </p>
  */
-public class S3ApiProvider implements S3CredentialsProvider {
+public class S3ApiProvider implements S3BatchCredentialsProvider, S3MultipartCredentialsProvider {
     private String apiUrl;
+    private String batchApiUrl;
+    private String multipartApiUrl;
 
     /**
      * Creates a new S3ApiProvider instance that will retrieve S3 credentials from the specified url
@@ -27,6 +39,30 @@ public class S3ApiProvider implements S3CredentialsProvider {
         this.apiUrl = apiUrl;
     }
 
+    /**
+     * Sets the API url to make requests to for credentials for several files at once. The number
+     * of files will be appended to this url as a {@code count} query parameter, and the endpoint is
+     * expected to give a JSON response containing an array of exactly that many objects, each
+     * matching the structure of {@link S3Credentials}.
+     *
+     * @param batchApiUrl The API url to make requests to for batches of credentials
+     */
+    public void setBatchApiUrl(String batchApiUrl) {
+        this.batchApiUrl = batchApiUrl;
+    }
+
+    /**
+     * Sets the API url to make requests to for initiating multipart uploads. The {@code key},
+     * {@code contentType}, {@code acl}, and {@code partCount} of the upload will be appended to
+     * this url as query parameters, and the endpoint is expected to give a JSON response that
+     * matches the structure of {@link S3MultipartCredentials} exactly.
+     *
+     * @param multipartApiUrl The API url to make requests to for multipart upload credentials
+     */
+    public void setMultipartApiUrl(String multipartApiUrl) {
+        this.multipartApiUrl = multipartApiUrl;
+    }
+
     /**
      * Makes a GET request to this provider's API url for new S3 credentials, attempting to parse
      * the response as JSON into an {@link S3Credentials} instance.
@@ -36,14 +72,83 @@ public class S3ApiProvider implements S3CredentialsProvider {
      */
     @Override
     public S3Credentials getCredentials() {
+        return fetch(apiUrl, S3Credentials.class);
+    }
+
+    /**
+     * Makes a GET request to this provider's batch API url for {@code count} new S3 credentials,
+     * attempting to parse the response as a JSON array of {@link S3Credentials} instances. If no
+     * batch API url has been set, a single request is made to this provider's regular API url
+     * instead, and the resulting credentials are shared by all files.
+     *
+     * @return An array of {@link S3Credentials} representing the response received from the remote
+     *         server, or {@code null} if the request failed or returned the wrong number of
+     *         credentials
+     */
+    @Override
+    public S3Credentials[] getCredentials(int count) {
+        S3Credentials[] credentials;
+        if (batchApiUrl == null) {
+            S3Credentials shared = getCredentials();
+            if (shared == null) {
+                return null;
+            }
+            credentials = new S3Credentials[count];
+            Arrays.fill(credentials, shared);
+            return credentials;
+        }
+
+        String url = Uri.parse(batchApiUrl).buildUpon()
+            .appendQueryParameter("count", String.valueOf(count))
+            .build()
+            .toString();
+        credentials = fetch(url, S3Credentials[].class);
+        return credentials != null && credentials.length == count ? credentials : null;
+    }
+
+    /**
+     * Returns whether a multipart API url has been set.
+     *
+     * @return {@code true} if {@link S3ApiProvider#setMultipartApiUrl(String)} was called with a
+     *         non-null url
+     */
+    @Override
+    public boolean isMultipartSupported() {
+        return multipartApiUrl != null;
+    }
+
+    /**
+     * Makes a GET request to this provider's multipart API url, attempting to parse the response
+     * as JSON into an {@link S3MultipartCredentials} instance.
+     *
+     * @return An {@link S3MultipartCredentials} representing the response received from the remote
+     *         server, or {@code null} if the request failed or no multipart API url has been set
+     */
+    @Override
+    public S3MultipartCredentials getMultipartCredentials(String key, String contentType, String acl, int partCount) {
+        if (multipartApiUrl == null) {
+            return null;
+        }
+
+        String url = Uri.parse(multipartApiUrl).buildUpon()
+            .appendQueryParameter("key", key)
+            .appendQueryParameter("contentType", contentType)
+            .appendQueryParameter("acl", acl)
+            .appendQueryParameter("partCount", String.valueOf(partCount))
+            .build()
+            .toString();
+        return fetch(url, S3MultipartCredentials.class);
+    }
+
+    private <T> T fetch(String apiUrl, Class<T> responseClass) {
         HttpURLConnection urlConnection = null;
-        S3Credentials credentials = null;
+        T response = null;
 
         try {
             URL url = new URL(apiUrl);
             urlConnection = (HttpURLConnection) url.openConnection();
             InputStream in = new BufferedInputStream(urlConnection.getInputStream());
-            credentials = new Gson().fromJson(new InputStreamReader(in), S3Credentials.class);
+            response = new Gson().fromJson(new InputStreamReader(in), responseClass);
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
@@ -52,6 +157,6 @@ public class S3ApiProvider implements S3CredentialsProvider {
             }
         }
 
-        return credentials;
+        return response;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,19 @@
+package com.isbx.androidtools.networking.s3;
+
+/**
+ * An extension of {@link S3CredentialsProvider} for providers that can issue credentials for
+ * several files at once. This allows every file in an upload request to have its own policy and
+ * key prefix, while still only making a single request for credentials.
+ */
+public interface S3BatchCredentialsProvider extends S3CredentialsProvider {
+    /**
+     * Returns an array of {@link S3Credentials} to be used to make authenticated requests to AWS,
+     * one for each file in an upload request. The same instance may be returned for several files
+     * if they can share credentials.
+     *
+     * @param count The number of files to provide credentials for
+     * @return An array of {@code count} valid {@link S3Credentials} objects, or {@code null} if
+     *         the credentials could not be retrieved
+     */
+    S3Credentials[] getCredentials(int count);
+}
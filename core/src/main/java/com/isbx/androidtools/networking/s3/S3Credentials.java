@@ -17,6 +17,29 @@ public class S3Credentials {
     private String bucket;
     @SerializedName("Content-Type")
     private String contentType;
+    private String uploadUrl;
+
+    /**
+     * Creates a new, empty S3Credentials instance.
+     */
+    public S3Credentials() {
+    }
+
+    /**
+     * Creates a copy of the given credentials, with every property set to the same value.
+     *
+     * @param source The {@link S3Credentials} to copy
+     */
+    public S3Credentials(S3Credentials source) {
+        this.expirationDate = source.expirationDate;
+        this.uniqueFilePrefix = source.uniqueFilePrefix;
+        this.AWSAccessKeyId = source.AWSAccessKeyId;
+        this.policy = source.policy;
+        this.signature = source.signature;
+        this.bucket = source.bucket;
+        this.contentType = source.contentType;
+        this.uploadUrl = source.uploadUrl;
+    }
 
     /**
      * Returns the public AWS access key to use for authenticating requests with these credentials.
@@ -161,4 +184,34 @@ public class S3Credentials {
     public void setUniqueFilePrefix(String uniqueFilePrefix) {
         this.uniqueFilePrefix = uniqueFilePrefix;
     }
+
+    /**
+     * Returns a presigned url to upload the file to with a single PUT request, if these
+     * credentials were issued for one.
+     *
+     * @return The presigned upload url, or {@code null} if the file should be uploaded with a POST
+     * request using the policy and signature of these credentials
+     */
+    public String getUploadUrl() {
+        return uploadUrl;
+    }
+
+    /**
+     * Sets a presigned url to upload the file to with a single PUT request. The raw file is sent
+     * as the request body with an exact Content-Length, instead of being encoded as
+     * multipart/form-data, and the policy, signature, and key prefix of these credentials are not
+     * used. The uploaded file's S3 url is the presigned url without its query string.
+     *
+     * <p>
+     * A presigned url is only valid for a single key, so when uploading several files in one
+     * request the {@link S3CredentialsProvider} must implement {@link S3BatchCredentialsProvider}
+     * to issue a url for every file. The ACL of the upload must also be part of the presigned url,
+     * for example as a signed {@code x-amz-acl} query parameter.
+     * </p>
+     *
+     * @param uploadUrl A presigned S3 PUT url, or {@code null} to upload with a POST request
+     */
+    public void setUploadUrl(String uploadUrl) {
+        this.uploadUrl = uploadUrl;
+    }
 }
@@ -0,0 +1,139 @@
+package com.isbx.androidtools.networking.s3;
+
+/**
+ * This class contains the information necessary to upload a single file to an Amazon S3 bucket in
+ * several parts using the S3 multipart upload API. An instance of this class represents a multipart
+ * upload that has already been initiated by an {@link S3MultipartCredentialsProvider}, along with
+ * a pre-signed url for each part of the upload and for completing or aborting it.
+ *
+ * <p>
+ * For more information on multipart uploads, see
+ * <a href="https://docs.aws.amazon.com/AmazonS3/latest/dev/mpuoverview.html">
+ * https://docs.aws.amazon.com/AmazonS3/latest/dev/mpuoverview.html</a>
+ * </p>
+ *
+ * @see S3MultipartCredentialsProvider
+ */
+public class S3MultipartCredentials {
+    private String uploadId;
+    private String bucket;
+    private String key;
+    private String[] partUrls;
+    private String completeUrl;
+    private String abortUrl;
+
+    /**
+     * Returns the id S3 assigned to this multipart upload when it was initiated.
+     *
+     * @return The multipart upload id
+     */
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    /**
+     * Sets the id S3 assigned to this multipart upload when it was initiated.
+     *
+     * @param uploadId The multipart upload id
+     */
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    /**
+     * Returns the S3 bucket the file is being uploaded to.
+     *
+     * @return The name of the Amazon S3 bucket
+     */
+    public String getBucket() {
+        return bucket;
+    }
+
+    /**
+     * Specifies the S3 bucket the file is being uploaded to.
+     *
+     * @param bucket The name of the Amazon S3 bucket
+     */
+    public void setBucket(String bucket) {
+        this.bucket = bucket;
+    }
+
+    /**
+     * Returns the S3 key of the file being uploaded.
+     *
+     * @return The key of the uploaded file
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Sets the S3 key of the file being uploaded.
+     *
+     * @param key The key of the uploaded file
+     */
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Returns the pre-signed urls to upload each part of the file to with a PUT request. The url
+     * for part number {@code n} is found at index {@code n - 1}.
+     *
+     * @return An array of pre-signed part upload urls
+     */
+    public String[] getPartUrls() {
+        return partUrls;
+    }
+
+    /**
+     * Sets the pre-signed urls to upload each part of the file to with a PUT request. The url for
+     * part number {@code n} should be at index {@code n - 1}.
+     *
+     * @param partUrls An array of pre-signed part upload urls
+     */
+    public void setPartUrls(String[] partUrls) {
+        this.partUrls = partUrls;
+    }
+
+    /**
+     * Returns the pre-signed url to POST the list of uploaded parts to once all parts have been
+     * uploaded.
+     *
+     * @return The pre-signed url for completing the multipart upload
+     */
+    public String getCompleteUrl() {
+        return completeUrl;
+    }
+
+    /**
+     * Sets the pre-signed url to POST the list of uploaded parts to once all parts have been
+     * uploaded.
+     *
+     * @param completeUrl The pre-signed url for completing the multipart upload
+     */
+    public void setCompleteUrl(String completeUrl) {
+        this.completeUrl = completeUrl;
+    }
+
+    /**
+     * Returns the pre-signed url to send a DELETE request to if the multipart upload fails, so
+     * that S3 can discard any parts that were already uploaded.
+     *
+     * @return The pre-signed url for aborting the multipart upload, or {@code null}
+     */
+    public String getAbortUrl() {
+        return abortUrl;
+    }
+
+    /**
+     * Sets the pre-signed url to send a DELETE request to if the multipart upload fails. This is
+     * optional, but without it any parts already uploaded will be kept by S3 until they are
+     * removed by a bucket lifecycle rule.
+     *
+     * @param abortUrl The pre-signed url for aborting the multipart upload
+     */
+    public void setAbortUrl(String abortUrl) {
+        this.abortUrl = abortUrl;
+    }
+}
@@ -0,0 +1,33 @@
+package com.isbx.androidtools.networking.s3;
+
+/**
+ * An extension of {@link S3CredentialsProvider} for providers that can also authorize S3 multipart
+ * uploads. Since every request of a multipart upload must be signed individually, implementations
+ * are expected to initiate the upload on behalf of the client and return pre-signed urls for each
+ * part.
+ *
+ * @see S3MultipartCredentials
+ */
+public interface S3MultipartCredentialsProvider extends S3CredentialsProvider {
+    /**
+     * Returns whether this provider is currently able to authorize multipart uploads. Files are
+     * only uploaded in parts while this returns {@code true}, and are otherwise sent in a single
+     * request.
+     *
+     * @return Whether {@link #getMultipartCredentials(String, String, String, int)} is supported
+     */
+    boolean isMultipartSupported();
+
+    /**
+     * Initiates a multipart upload for the given key and returns a new instance of
+     * {@link S3MultipartCredentials} containing a pre-signed url for each of its parts.
+     *
+     * @param key The S3 key the file will be uploaded to
+     * @param contentType The Content-Type of the file being uploaded
+     * @param acl The canned ACL to apply to the uploaded file
+     * @param partCount The number of parts the file will be split into
+     * @return A valid {@link S3MultipartCredentials} object, or {@code null} if the upload could
+     *         not be initiated
+     */
+    S3MultipartCredentials getMultipartCredentials(String key, String contentType, String acl, int partCount);
+}
@@ -0,0 +1,123 @@
+package com.isbx.androidtools.networking;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The uptime clock doesn't advance in JVM tests, so the throughput of a window is proportional
+ * to the bytes recorded in it.
+ */
+public class ConcurrencyControllerTest {
+    private final List<Integer> limits = new ArrayList<>();
+    private ConcurrencyController controller;
+
+    @Before
+    public void setUp() {
+        controller = new ConcurrencyController(new AdaptiveConcurrencyPolicy(), 8, new ConcurrencyController.Callback() {
+            @Override
+            public void onLimitChanged(int previousLimit, int limit, long throughput, double errorRate) {
+                limits.add(limit);
+            }
+        });
+    }
+
+    @Test
+    public void increasesAdditivelyWhileThroughputGrows() {
+        assertEquals(2, controller.getLimit());
+
+        recordWindow(1000);
+        assertEquals(3, controller.getLimit());
+        recordWindow(1000);
+        assertEquals(4, controller.getLimit());
+        assertEquals(listOf(3, 4), limits);
+    }
+
+    @Test
+    public void decreasesMultiplicativelyOnCongestion() {
+        recordWindow(1000);
+        recordWindow(1000);
+        assertEquals(4, controller.getLimit());
+
+        controller.onResult(0, true);
+        assertEquals(2, controller.getLimit());
+
+        // uploads that started before the decrease are ignored until a full window has passed
+        controller.onResult(0, true);
+        assertEquals(2, controller.getLimit());
+    }
+
+    @Test
+    public void resumesIncreasingAfterRecovering() {
+        recordWindow(1000);
+        controller.onResult(0, true);
+        assertEquals(1, controller.getLimit());
+
+        recordWindow(1000);
+        assertEquals("the recovery window only ends the recovery", 1, controller.getLimit());
+        recordWindow(1000);
+        assertEquals(2, controller.getLimit());
+    }
+
+    @Test
+    public void stepsBackWhenExtraUploadDoesNotPayOff() {
+        recordWindow(1000);
+        assertEquals(3, controller.getLimit());
+
+        // three uploads moved as many bytes as two did before
+        controller.onResult(700, false);
+        controller.onResult(700, false);
+        controller.onResult(600, false);
+        assertEquals(2, controller.getLimit());
+
+        recordWindow(1000);
+        assertEquals("holds for a window after stepping back", 2, controller.getLimit());
+        recordWindow(1000);
+        assertEquals(3, controller.getLimit());
+    }
+
+    @Test
+    public void staysWithinBounds() {
+        controller.setMaxLimit(3);
+        for (int i = 0; i < 5; i++) {
+            recordWindow(1000 * (i + 1));
+        }
+        assertEquals(3, controller.getLimit());
+
+        for (int i = 0; i < 5; i++) {
+            controller.onResult(0, true);
+            recordWindow(1);
+        }
+        assertEquals(1, controller.getLimit());
+    }
+
+    @Test
+    public void resetStartsOverAtInitialLimit() {
+        recordWindow(1000);
+        recordWindow(1000);
+        controller.reset();
+        assertEquals(2, controller.getLimit());
+    }
+
+    /**
+     * Records a full window of successful uploads of {@code bytes} each at the current limit.
+     */
+    private void recordWindow(long bytes) {
+        int count = controller.getLimit();
+        for (int i = 0; i < count; i++) {
+            controller.onResult(bytes, false);
+        }
+    }
+
+    private static List<Integer> listOf(Integer... values) {
+        List<Integer> list = new ArrayList<>();
+        for (Integer value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,43 @@
+package com.isbx.androidtools.networking;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A {@link ConnectivityMonitor} whose network type is set by the test, notifying its listeners
+ * synchronously like {@link AndroidConnectivityMonitor} does on the main thread.
+ */
+class FakeConnectivityMonitor implements ConnectivityMonitor {
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile NetworkType networkType;
+
+    FakeConnectivityMonitor(NetworkType networkType) {
+        this.networkType = networkType;
+    }
+
+    void setNetworkType(NetworkType networkType) {
+        this.networkType = networkType;
+        for (Listener listener : listeners) {
+            listener.onNetworkChanged(networkType);
+        }
+    }
+
+    int getListenerCount() {
+        return listeners.size();
+    }
+
+    @Override
+    public NetworkType getNetworkType() {
+        return networkType;
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
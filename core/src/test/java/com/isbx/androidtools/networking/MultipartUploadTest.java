@@ -0,0 +1,33 @@
+package com.isbx.androidtools.networking;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MultipartUploadTest {
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void keepsPreferredPartSizeForSmallFiles() {
+        assertEquals(MultipartUpload.MIN_PART_SIZE,
+            MultipartUpload.getPartSize(100 * MB, MultipartUpload.MIN_PART_SIZE));
+        assertEquals(8 * MB, MultipartUpload.getPartSize(100 * MB, 8 * MB));
+    }
+
+    @Test
+    public void growsPartSizeToStayWithinMaxPartCount() {
+        long length = MultipartUpload.MAX_PART_COUNT * MultipartUpload.MIN_PART_SIZE + 1;
+        long partSize = MultipartUpload.getPartSize(length, MultipartUpload.MIN_PART_SIZE);
+
+        assertTrue(partSize > MultipartUpload.MIN_PART_SIZE);
+        assertEquals(MultipartUpload.MAX_PART_COUNT, MultipartUpload.getPartCount(length, partSize));
+    }
+
+    @Test
+    public void countsPartsRoundingUp() {
+        assertEquals(1, MultipartUpload.getPartCount(0, 5 * MB));
+        assertEquals(1, MultipartUpload.getPartCount(5 * MB, 5 * MB));
+        assertEquals(2, MultipartUpload.getPartCount(5 * MB + 1, 5 * MB));
+    }
+}
@@ -0,0 +1,117 @@
+package com.isbx.androidtools.networking;
+
+import com.isbx.androidtools.networking.ConnectivityMonitor.NetworkType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkGateTest {
+    private static final long JOIN_TIMEOUT_MS = 5000;
+
+    private FakeConnectivityMonitor monitor;
+    private NetworkPolicy policy;
+    private NetworkGate gate;
+
+    @Before
+    public void setUp() {
+        monitor = new FakeConnectivityMonitor(NetworkType.METERED);
+        policy = new NetworkPolicy().setUnmeteredOnlyThreshold(1000);
+        gate = new NetworkGate(monitor, policy);
+        monitor.addListener(new ConnectivityMonitor.Listener() {
+            @Override
+            public void onNetworkChanged(NetworkType networkType) {
+                gate.notifyChanged();
+            }
+        });
+    }
+
+    @Test
+    public void defersLargeFilesToUnmeteredNetworks() {
+        assertTrue(gate.allows(999));
+        assertFalse(gate.allows(1000));
+        assertTrue("files of unknown length are never deferred", gate.allows(-1));
+
+        monitor.setNetworkType(NetworkType.UNMETERED);
+        assertTrue(gate.allows(1000));
+    }
+
+    @Test
+    public void allowsNothingWhileOffline() {
+        monitor.setNetworkType(NetworkType.NONE);
+        assertFalse(gate.allows(1));
+    }
+
+    @Test
+    public void allowsEverythingWithoutThreshold() {
+        gate.setPolicy(new NetworkPolicy());
+        assertTrue(gate.allows(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void resumesWhenConnectivityReturns() throws InterruptedException {
+        monitor.setNetworkType(NetworkType.NONE);
+        final UploadHandle handle = new UploadHandle();
+        final AtomicBoolean connected = new AtomicBoolean();
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                connected.set(gate.awaitConnected(handle));
+            }
+        });
+        waiter.start();
+
+        waiter.join(100);
+        assertTrue("still waiting while offline", waiter.isAlive());
+
+        monitor.setNetworkType(NetworkType.METERED);
+        waiter.join(JOIN_TIMEOUT_MS);
+        assertFalse(waiter.isAlive());
+        assertTrue(connected.get());
+    }
+
+    @Test
+    public void submitsDeferredFilesWhenNetworkChanges() throws InterruptedException {
+        final UploadHandle handle = new UploadHandle();
+        final int generation = gate.getGeneration();
+        assertFalse(gate.allows(5000));
+
+        final AtomicBoolean changed = new AtomicBoolean();
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                changed.set(gate.awaitChange(generation, handle));
+            }
+        });
+        waiter.start();
+
+        monitor.setNetworkType(NetworkType.UNMETERED);
+        waiter.join(JOIN_TIMEOUT_MS);
+        assertFalse(waiter.isAlive());
+        assertTrue(changed.get());
+        assertTrue(gate.allows(5000));
+    }
+
+    @Test
+    public void stopsWaitingWhenCancelled() throws InterruptedException {
+        monitor.setNetworkType(NetworkType.NONE);
+        final UploadHandle handle = new UploadHandle();
+        final AtomicBoolean connected = new AtomicBoolean(true);
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                connected.set(gate.awaitConnected(handle));
+            }
+        });
+        waiter.start();
+
+        handle.cancel();
+        waiter.join(JOIN_TIMEOUT_MS);
+        assertFalse(waiter.isAlive());
+        assertFalse(connected.get());
+    }
+}
@@ -0,0 +1,52 @@
+package com.isbx.androidtools.networking;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void delayDoublesWithJitterUpToMaxDelay() {
+        RetryPolicy policy = new RetryPolicy().setBaseDelay(100).setMaxDelay(1000);
+        for (int i = 0; i < 100; i++) {
+            assertBetween(50, 100, policy.getDelay(2));
+            assertBetween(100, 200, policy.getDelay(3));
+            assertBetween(200, 400, policy.getDelay(4));
+            assertBetween(500, 1000, policy.getDelay(6));
+            assertBetween(500, 1000, policy.getDelay(50));
+        }
+    }
+
+    @Test
+    public void retriesTransientFailures() {
+        RetryPolicy policy = new RetryPolicy();
+        assertTrue(policy.isRetryable(0, new IOException()));
+        assertTrue(policy.isRetryable(503, null));
+        assertTrue(policy.isRetryable(429, null));
+        assertFalse(policy.isRetryable(0, new IllegalStateException()));
+        assertFalse(policy.isRetryable(403, null));
+    }
+
+    @Test
+    public void retryableFailuresAreConfigurable() {
+        RetryPolicy policy = new RetryPolicy()
+            .setRetryableStatusCodes(409)
+            .setRetryOnIOException(false);
+        assertTrue(policy.isRetryable(409, null));
+        assertFalse(policy.isRetryable(503, null));
+        assertFalse(policy.isRetryable(0, new IOException()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroAttempts() {
+        new RetryPolicy().setMaxAttempts(0);
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        assertTrue(actual + " is not between " + min + " and " + max, actual >= min && actual <= max);
+    }
+}
@@ -0,0 +1,131 @@
+package com.isbx.androidtools.networking;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.net.Uri;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UploadJournalTest {
+    private static final String FILE_NAME = "journal";
+
+    private File dir;
+    private Context context;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("journal", null);
+        assertTrue(dir.delete() && dir.mkdir());
+        context = new ContextWrapper(null) {
+            @Override
+            public File getFilesDir() {
+                return dir;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void replaysUnfinishedRequests() {
+        UploadJournal journal = new UploadJournal(context, FILE_NAME);
+        journal.recordStarted("a", new Uri[2], new String[]{"key0", "key1"}, "private");
+        journal.recordCompleted("a", 0, "url0");
+        journal.recordStarted("b", new Uri[1], new String[]{"key2"}, "public-read");
+
+        List<UploadJournal.PendingUpload> pending = new UploadJournal(context, FILE_NAME).getPendingUploads();
+        assertEquals(2, pending.size());
+
+        UploadJournal.PendingUpload a = pending.get(0);
+        assertEquals("a", a.getId());
+        assertEquals("private", a.getAcl());
+        assertArrayEquals(new String[]{"key0", "key1"}, a.getKeys());
+        assertArrayEquals(new String[]{"url0", null}, a.getUrls());
+        assertEquals(1, a.getCompletedCount());
+
+        assertEquals("b", pending.get(1).getId());
+        assertEquals(0, pending.get(1).getCompletedCount());
+    }
+
+    @Test
+    public void forgetsFinishedRequests() {
+        UploadJournal journal = new UploadJournal(context, FILE_NAME);
+        journal.recordStarted("a", new Uri[1], new String[]{"key0"}, "private");
+        journal.recordStarted("b", new Uri[1], new String[]{"key1"}, "private");
+        journal.recordFinished("a");
+
+        List<UploadJournal.PendingUpload> pending = new UploadJournal(context, FILE_NAME).getPendingUploads();
+        assertEquals(1, pending.size());
+        assertEquals("b", pending.get(0).getId());
+    }
+
+    @Test
+    public void activeRequestsAreNotPending() {
+        UploadJournal journal = new UploadJournal(context, FILE_NAME);
+        journal.recordStarted("a", new Uri[1], new String[]{"key0"}, "private");
+        assertEquals(0, journal.getPendingUploads().size());
+    }
+
+    @Test
+    public void compactsOnOpen() throws IOException {
+        UploadJournal journal = new UploadJournal(context, FILE_NAME);
+        journal.recordStarted("a", new Uri[1], new String[]{"key0"}, "private");
+        journal.recordFinished("a");
+        journal.recordStarted("b", new Uri[2], new String[]{"key1", "key2"}, "private");
+        journal.recordCompleted("b", 1, "url2");
+        assertEquals(5, countLines());
+
+        new UploadJournal(context, FILE_NAME);
+        // a pending record per file of "b" and a completed record for its second file
+        assertEquals(3, countLines());
+    }
+
+    @Test
+    public void ignoresTruncatedRecords() throws IOException {
+        UploadJournal journal = new UploadJournal(context, FILE_NAME);
+        journal.recordStarted("a", new Uri[1], new String[]{"key0"}, "private");
+
+        FileWriter writer = new FileWriter(new File(dir, FILE_NAME), true);
+        writer.write("{\"type\":\"finished\",\"id\":");
+        writer.close();
+
+        List<UploadJournal.PendingUpload> pending = new UploadJournal(context, FILE_NAME).getPendingUploads();
+        assertEquals(1, pending.size());
+        assertEquals("a", pending.get(0).getId());
+    }
+
+    private int countLines() throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(new File(dir, FILE_NAME)));
+        try {
+            int count = 0;
+            while (reader.readLine() != null) {
+                count++;
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.isbx.androidtools.networking;
+
+import com.isbx.androidtools.networking.ConnectivityMonitor.NetworkType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class UploadManagerNetworkTest {
+    private FakeConnectivityMonitor monitor;
+    private UploadManager manager;
+
+    @Before
+    public void setUp() {
+        monitor = new FakeConnectivityMonitor(NetworkType.METERED);
+        manager = new UploadManager(null, null);
+        manager.setMaxConcurrentUploads(4);
+        manager.setConnectTimeout(30000);
+        manager.setConnectivityMonitor(monitor);
+    }
+
+    @Test
+    public void limitsConcurrencyPerNetwork() {
+        assertEquals(4, manager.getCurrentMaxConcurrentUploads());
+
+        monitor.setNetworkType(NetworkType.CONSTRAINED);
+        assertEquals(1, manager.getCurrentMaxConcurrentUploads());
+
+        monitor.setNetworkType(NetworkType.UNMETERED);
+        assertEquals(4, manager.getCurrentMaxConcurrentUploads());
+    }
+
+    @Test
+    public void networkLimitNeverRaisesMaxConcurrentUploads() {
+        manager.setNetworkPolicy(new NetworkPolicy()
+            .setMaxConcurrentUploads(NetworkType.METERED, 2)
+            .setMaxConcurrentUploads(NetworkType.UNMETERED, 8));
+        assertEquals(2, manager.getCurrentMaxConcurrentUploads());
+
+        monitor.setNetworkType(NetworkType.UNMETERED);
+        assertEquals(4, manager.getCurrentMaxConcurrentUploads());
+    }
+
+    @Test
+    public void overridesTimeoutsPerNetwork() {
+        assertEquals(30000, manager.getEffectiveTimeout(manager.getConnectTimeout()));
+
+        monitor.setNetworkType(NetworkType.CONSTRAINED);
+        assertEquals(60000, manager.getEffectiveTimeout(manager.getConnectTimeout()));
+
+        manager.setNetworkPolicy(new NetworkPolicy().setTimeout(NetworkType.CONSTRAINED, 90000));
+        assertEquals(90000, manager.getEffectiveTimeout(manager.getConnectTimeout()));
+    }
+
+    @Test
+    public void ignoresNetworkWithoutMonitor() {
+        monitor.setNetworkType(NetworkType.CONSTRAINED);
+        manager.setConnectivityMonitor(null);
+
+        assertEquals(0, monitor.getListenerCount());
+        assertEquals(4, manager.getCurrentMaxConcurrentUploads());
+        assertEquals(30000, manager.getEffectiveTimeout(manager.getConnectTimeout()));
+    }
+}
@@ -0,0 +1,113 @@
+package com.isbx.androidtools.networking;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class UploadSchedulerTest {
+    private final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private UploadScheduler scheduler;
+    private List<Future<?>> futures = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        // a single thread, kept busy until every upload of the test was submitted
+        scheduler = new UploadScheduler(1, 1000);
+        scheduler.submit(new UploadHandle(), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void requestsOfEqualPriorityTakeTurns() throws Exception {
+        UploadHandle a = new UploadHandle();
+        UploadHandle b = new UploadHandle();
+        submit(a, "a0");
+        submit(a, "a1");
+        submit(a, "a2");
+        submit(b, "b0");
+        submit(b, "b1");
+
+        assertOrder("a0", "b0", "a1", "b1", "a2");
+    }
+
+    @Test
+    public void higherPriorityRunsFirst() throws Exception {
+        UploadHandle low = new UploadHandle();
+        UploadHandle high = new UploadHandle();
+        high.setPriority(5);
+        submit(low, "low0");
+        submit(low, "low1");
+        submit(high, "high0");
+        submit(high, "high1");
+
+        assertOrder("high0", "high1", "low0", "low1");
+    }
+
+    @Test
+    public void reprioritizesWaitingUploads() throws Exception {
+        UploadHandle a = new UploadHandle();
+        UploadHandle b = new UploadHandle();
+        b.setScheduler(scheduler);
+        submit(a, "a0");
+        submit(b, "b0");
+        b.setPriority(1);
+
+        assertOrder("b0", "a0");
+    }
+
+    @Test
+    public void groupedUploadsStayAdjacent() throws Exception {
+        UploadHandle a = new UploadHandle();
+        UploadHandle variants = new UploadHandle();
+        submit(a, "a0");
+        submit(a, "a1");
+        futures.addAll(scheduler.submitAll(variants, Arrays.asList(record("large"), record("medium"),
+            record("small"))));
+
+        assertOrder("a0", "large", "medium", "small", "a1");
+    }
+
+    private void submit(UploadHandle handle, String name) {
+        futures.add(scheduler.submit(handle, record(name)));
+    }
+
+    private Runnable record(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+            }
+        };
+    }
+
+    private void assertOrder(String... expected) throws Exception {
+        blocked.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        assertEquals(Arrays.asList(expected), order);
+    }
+}